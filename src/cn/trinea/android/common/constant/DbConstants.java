@@ -8,13 +8,19 @@ package cn.trinea.android.common.constant;
 public class DbConstants {
 
     public static final String       DB_NAME                                       = "trinea_android_common.db";
-    public static final int          DB_VERSION                                    = 1;
+    public static final int          DB_VERSION                                    = 2;
 
     private static final String      TERMINATOR                                    = ";";
 
     /** image sdcard cache table **/
     public static final StringBuffer CREATE_IMAGE_SDCARD_CACHE_TABLE_SQL           = new StringBuffer();
     public static final StringBuffer CREATE_IMAGE_SDCARD_CACHE_TABLE_INDEX_SQL     = new StringBuffer();
+    /** sql for compiled statement, bind all columns except id in order **/
+    public static final StringBuffer IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL           = new StringBuffer();
+    /** sql for compiled statement, bind tag **/
+    public static final StringBuffer IMAGE_SDCARD_CACHE_TABLE_DELETE_BY_TAG_SQL    = new StringBuffer();
+    /** sql for compiled statement, bind tag, url **/
+    public static final StringBuffer IMAGE_SDCARD_CACHE_TABLE_DELETE_BY_URL_SQL    = new StringBuffer();
     public static final String       IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME           = "image_sdcard_cache";
     public static final String       IMAGE_SDCARD_CACHE_TABLE_ID                   = android.provider.BaseColumns._ID;
     public static final String       IMAGE_SDCARD_CACHE_TABLE_TAG                  = "tag";
@@ -45,6 +51,9 @@ public class DbConstants {
     public static final StringBuffer CREATE_HTTP_CACHE_TABLE_SQL                   = new StringBuffer();
     public static final StringBuffer CREATE_HTTP_CACHE_TABLE_INDEX_SQL             = new StringBuffer();
     public static final StringBuffer CREATE_HTTP_CACHE_TABLE_UNIQUE_INDEX          = new StringBuffer();
+    /** sqls to upgrade http response cache table from version 1 to 2, add etag and last modified columns **/
+    public static final StringBuffer UPGRADE_HTTP_CACHE_TABLE_ETAG_SQL             = new StringBuffer();
+    public static final StringBuffer UPGRADE_HTTP_CACHE_TABLE_LAST_MODIFIED_SQL    = new StringBuffer();
     public static final String       HTTP_CACHE_TABLE_TABLE_NAME                   = "http_cache";
     public static final String       HTTP_CACHE_TABLE_ID                           = android.provider.BaseColumns._ID;
     public static final String       HTTP_CACHE_TABLE_URL                          = "url";
@@ -52,6 +61,8 @@ public class DbConstants {
     public static final String       HTTP_CACHE_TABLE_EXPIRES                      = "expires";
     public static final String       HTTP_CACHE_TABLE_CREATE_TIME                  = "gmt_create";
     public static final String       HTTP_CACHE_TABLE_TYPE                         = "type";
+    public static final String       HTTP_CACHE_TABLE_ETAG                         = "etag";
+    public static final String       HTTP_CACHE_TABLE_LAST_MODIFIED                = "last_modified";
 
     public static final String       HTTP_CACHE_TABLE_UNIQUE_INDEX_URL             = "http_cache_table_unique_index_url";
     public static final String       HTTP_CACHE_TABLE_INDEX_TYPE                   = "http_cache_table_index_type";
@@ -62,6 +73,8 @@ public class DbConstants {
     public static final int          HTTP_CACHE_TABLE_EXPIRES_INDEX                = 3;
     public static final int          HTTP_CACHE_TABLE_CREATE_TIME_INDEX            = 4;
     public static final int          HTTP_CACHE_TABLE_TYPE_INDEX                   = 5;
+    public static final int          HTTP_CACHE_TABLE_ETAG_INDEX                   = 6;
+    public static final int          HTTP_CACHE_TABLE_LAST_MODIFIED_INDEX          = 7;
 
     static {
         /**
@@ -89,6 +102,24 @@ public class DbConstants {
                                                  .append(IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME).append("(")
                                                  .append(IMAGE_SDCARD_CACHE_TABLE_URL).append(")").append(TERMINATOR);
 
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append("INSERT INTO ").append(IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME);
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(" (");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_TAG).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_URL).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_PATH).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_ENTER_TIME).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_LAST_USED_TIME).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_USED_COUNT).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_PRIORITY).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_IS_EXPIRED).append(",");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(IMAGE_SDCARD_CACHE_TABLE_IS_FOREVER).append(")");
+        IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.append(" VALUES (?,?,?,?,?,?,?,?,?)");
+
+        IMAGE_SDCARD_CACHE_TABLE_DELETE_BY_TAG_SQL.append("DELETE FROM ").append(IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME)
+                                                  .append(" WHERE ").append(IMAGE_SDCARD_CACHE_TABLE_TAG).append("=?");
+        IMAGE_SDCARD_CACHE_TABLE_DELETE_BY_URL_SQL.append(IMAGE_SDCARD_CACHE_TABLE_DELETE_BY_TAG_SQL).append(" AND ")
+                                                  .append(IMAGE_SDCARD_CACHE_TABLE_URL).append("=?");
+
         /**
          * sql to http response table
          **/
@@ -99,7 +130,9 @@ public class DbConstants {
         CREATE_HTTP_CACHE_TABLE_SQL.append(HTTP_CACHE_TABLE_RESPONSE).append(" text,");
         CREATE_HTTP_CACHE_TABLE_SQL.append(HTTP_CACHE_TABLE_EXPIRES).append(" integer,");
         CREATE_HTTP_CACHE_TABLE_SQL.append(HTTP_CACHE_TABLE_CREATE_TIME).append(" integer,");
-        CREATE_HTTP_CACHE_TABLE_SQL.append(HTTP_CACHE_TABLE_TYPE).append(" integer)").append(TERMINATOR);
+        CREATE_HTTP_CACHE_TABLE_SQL.append(HTTP_CACHE_TABLE_TYPE).append(" integer,");
+        CREATE_HTTP_CACHE_TABLE_SQL.append(HTTP_CACHE_TABLE_ETAG).append(" text,");
+        CREATE_HTTP_CACHE_TABLE_SQL.append(HTTP_CACHE_TABLE_LAST_MODIFIED).append(" text)").append(TERMINATOR);
 
         CREATE_HTTP_CACHE_TABLE_UNIQUE_INDEX.append("CREATE UNIQUE INDEX ").append(HTTP_CACHE_TABLE_UNIQUE_INDEX_URL)
                                             .append(" ON ").append(HTTP_CACHE_TABLE_TABLE_NAME).append("(")
@@ -108,5 +141,11 @@ public class DbConstants {
                                          .append(HTTP_CACHE_TABLE_TABLE_NAME).append("(").append(HTTP_CACHE_TABLE_TYPE)
                                          .append(")").append(TERMINATOR);
 
+        UPGRADE_HTTP_CACHE_TABLE_ETAG_SQL.append("ALTER TABLE ").append(HTTP_CACHE_TABLE_TABLE_NAME)
+                                         .append(" ADD COLUMN ").append(HTTP_CACHE_TABLE_ETAG).append(" text")
+                                         .append(TERMINATOR);
+        UPGRADE_HTTP_CACHE_TABLE_LAST_MODIFIED_SQL.append("ALTER TABLE ").append(HTTP_CACHE_TABLE_TABLE_NAME)
+                                                  .append(" ADD COLUMN ").append(HTTP_CACHE_TABLE_LAST_MODIFIED)
+                                                  .append(" text").append(TERMINATOR);
     }
 }
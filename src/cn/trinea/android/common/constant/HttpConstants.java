@@ -8,6 +8,12 @@ package cn.trinea.android.common.constant;
  */
 public class HttpConstants {
 
-    public static final String EXPIRES       = "expires";
-    public static final String CACHE_CONTROL = "cache-control";
+    public static final String EXPIRES          = "expires";
+    public static final String CACHE_CONTROL    = "cache-control";
+    public static final String CONTENT_TYPE     = "content-type";
+    public static final String CONTENT_ENCODING = "content-encoding";
+    public static final String ETAG             = "etag";
+    public static final String LAST_MODIFIED    = "last-modified";
+    public static final String DATE             = "date";
+    public static final String AGE              = "age";
 }
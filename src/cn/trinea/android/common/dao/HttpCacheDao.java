@@ -0,0 +1,59 @@
+package cn.trinea.android.common.dao;
+
+import java.util.Map;
+
+import cn.trinea.android.common.entity.HttpResponse;
+
+/**
+ * HttpCacheDao
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-15
+ */
+public interface HttpCacheDao {
+
+    /**
+     * insert HttpResponse, replace the row whose url is same
+     * 
+     * @param httpResponse
+     * @return the row ID of the newly inserted row, or -1 if an error occurred
+     */
+    public long insertHttpResponse(HttpResponse httpResponse);
+
+    /**
+     * get HttpResponse by url
+     * 
+     * @param url
+     * @return null represents not exist
+     */
+    public HttpResponse getHttpResponse(String url);
+
+    /**
+     * get all HttpResponses whose type is same to type and not expired
+     * 
+     * @param type
+     * @return key is url, value is HttpResponse
+     */
+    public Map<String, HttpResponse> getHttpResponsesByType(int type);
+
+    /**
+     * delete HttpResponse by url
+     * 
+     * @param url
+     * @return the number of rows affected
+     */
+    public int deleteHttpResponse(String url);
+
+    /**
+     * delete all HttpResponses expired
+     * 
+     * @return the number of rows affected
+     */
+    public int deleteExpiredHttpResponse();
+
+    /**
+     * delete all HttpResponses
+     * 
+     * @return the number of rows affected
+     */
+    public int deleteAllHttpResponse();
+}
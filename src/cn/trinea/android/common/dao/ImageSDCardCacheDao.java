@@ -1,5 +1,9 @@
 package cn.trinea.android.common.dao;
 
+import java.util.Collection;
+import java.util.Map;
+
+import cn.trinea.android.common.entity.CacheObject;
 import cn.trinea.android.common.service.impl.ImageSDCardCache;
 
 /**
@@ -24,6 +28,29 @@ public interface ImageSDCardCacheDao {
      */
     public boolean putIntoImageSDCardCache(ImageSDCardCache imageSDCardCache, String tag);
 
+    /**
+     * put rows in db whose tag is same to tag to imageSDCardCache, most recently used first
+     * <ul>
+     * <strong>Attentions:</strong>
+     * <li>If imageSDCardCache is null, do nothing</li>
+     * <li>If tag is null or empty, do nothing</li>
+     * <li>Rows are put by {@link ImageSDCardCache#putAllRestored(Map)} in batch, so no element will be removed when
+     * cache is full and elements already in cache are not replaced</li>
+     * <li>All rows are read by one query, even if cache is full</li>
+     * </ul>
+     * 
+     * @param imageSDCardCache
+     * @param tag tag used to mark this cache when save to and load from db, should be unique and cannot be null or
+     * empty
+     * @param offset count of rows to skip
+     * @param limit max count of rows to read, if less than 0, read all
+     * @param loadedMap if not null, copy of every row read is put into it, key is image url, so it's same to rows in
+     * db whether put into cache or not
+     * @return count of rows read from db, -1 if imageSDCardCache is null or tag is empty
+     */
+    public int putIntoImageSDCardCache(ImageSDCardCache imageSDCardCache, String tag, int offset, int limit,
+                                       Map<String, CacheObject<String>> loadedMap);
+
     /**
      * delete all rows in db whose tag is same to tag at first, and insert all data in imageSDCardCache to db
      * <ul>
@@ -31,10 +58,30 @@ public interface ImageSDCardCacheDao {
      * <li>If imageSDCardCache is null, do nothing</li>
      * <li>If tag is null or empty, do nothing</li>
      * <li>Will delete all rows in db whose tag is same to tag at first</li>
+     * <li>Delete and insert are in one transaction, rows in db will not be partial</li>
      * </ul>
      * 
      * @param imageSDCardCache
      * @return
      */
     public boolean deleteAndInsertImageSDCardCache(ImageSDCardCache imageSDCardCache, String tag);
+
+    /**
+     * update changed rows and delete removed rows whose tag is same to tag, other rows are not touched
+     * <ul>
+     * <strong>Attentions:</strong>
+     * <li>If tag is null or empty, do nothing</li>
+     * <li>For each entry in changedMap, update the row whose tag and url are same, insert one if not exist</li>
+     * <li>For each url in removedUrls, delete rows whose tag and url are same</li>
+     * <li>Rows are written in bounded transactions, if return false, some of them may have been written</li>
+     * </ul>
+     * 
+     * @param changedMap key is image url, value is cache object need to be saved, can be null
+     * @param removedUrls image urls need to be deleted, can be null
+     * @param tag tag used to mark this cache when save to and load from db, should be unique and cannot be null or
+     * empty
+     * @return
+     */
+    public boolean updateImageSDCardCache(Map<String, CacheObject<String>> changedMap, Collection<String> removedUrls,
+                                          String tag);
 }
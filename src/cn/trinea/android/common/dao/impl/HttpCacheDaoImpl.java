@@ -0,0 +1,146 @@
+package cn.trinea.android.common.dao.impl;
+
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import cn.trinea.android.common.constant.DbConstants;
+import cn.trinea.android.common.constant.HttpConstants;
+import cn.trinea.android.common.dao.HttpCacheDao;
+import cn.trinea.android.common.entity.HttpResponse;
+import cn.trinea.android.common.util.SqliteUtils;
+import cn.trinea.android.common.util.StringUtils;
+
+/**
+ * HttpCacheDao
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-15
+ */
+public class HttpCacheDaoImpl implements HttpCacheDao {
+
+    private SqliteUtils sqliteUtils;
+
+    public HttpCacheDaoImpl(SqliteUtils sqliteUtils){
+        this.sqliteUtils = sqliteUtils;
+    }
+
+    @Override
+    public long insertHttpResponse(HttpResponse httpResponse) {
+        if (httpResponse == null || StringUtils.isEmpty(httpResponse.getUrl())) {
+            return -1;
+        }
+
+        return sqliteUtils.getWDb().replace(DbConstants.HTTP_CACHE_TABLE_TABLE_NAME, null,
+                                            httpResponseToCV(httpResponse));
+    }
+
+    @Override
+    public HttpResponse getHttpResponse(String url) {
+        if (StringUtils.isEmpty(url)) {
+            return null;
+        }
+
+        StringBuilder selection = new StringBuilder();
+        selection.append(DbConstants.HTTP_CACHE_TABLE_URL).append("=?");
+        String[] selectionArgs = { url };
+        Cursor cursor = sqliteUtils.getRDb().query(DbConstants.HTTP_CACHE_TABLE_TABLE_NAME, null,
+                                                   selection.toString(), selectionArgs, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            return cursor.moveToFirst() ? cursorToHttpResponse(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public Map<String, HttpResponse> getHttpResponsesByType(int type) {
+        StringBuilder selection = new StringBuilder();
+        selection.append(DbConstants.HTTP_CACHE_TABLE_TYPE).append("=? AND ")
+                 .append(DbConstants.HTTP_CACHE_TABLE_EXPIRES).append(">=?");
+        String[] selectionArgs = { Integer.toString(type), Long.toString(System.currentTimeMillis()) };
+        Cursor cursor = sqliteUtils.getRDb().query(DbConstants.HTTP_CACHE_TABLE_TABLE_NAME, null,
+                                                   selection.toString(), selectionArgs, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+
+        Map<String, HttpResponse> httpResponseMap = new HashMap<String, HttpResponse>();
+        try {
+            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                HttpResponse httpResponse = cursorToHttpResponse(cursor);
+                httpResponseMap.put(httpResponse.getUrl(), httpResponse);
+            }
+        } finally {
+            cursor.close();
+        }
+        return httpResponseMap;
+    }
+
+    @Override
+    public int deleteHttpResponse(String url) {
+        if (StringUtils.isEmpty(url)) {
+            return 0;
+        }
+
+        StringBuilder whereClause = new StringBuilder();
+        whereClause.append(DbConstants.HTTP_CACHE_TABLE_URL).append("=?");
+        String[] whereArgs = { url };
+        return sqliteUtils.getWDb().delete(DbConstants.HTTP_CACHE_TABLE_TABLE_NAME, whereClause.toString(), whereArgs);
+    }
+
+    @Override
+    public int deleteExpiredHttpResponse() {
+        StringBuilder whereClause = new StringBuilder();
+        whereClause.append(DbConstants.HTTP_CACHE_TABLE_EXPIRES).append("<?");
+        String[] whereArgs = { Long.toString(System.currentTimeMillis()) };
+        return sqliteUtils.getWDb().delete(DbConstants.HTTP_CACHE_TABLE_TABLE_NAME, whereClause.toString(), whereArgs);
+    }
+
+    @Override
+    public int deleteAllHttpResponse() {
+        return sqliteUtils.getWDb().delete(DbConstants.HTTP_CACHE_TABLE_TABLE_NAME, null, null);
+    }
+
+    /**
+     * convert cursor to HttpResponse, cursor should contain all columns of http cache table
+     * 
+     * @param cursor
+     * @return
+     */
+    private static HttpResponse cursorToHttpResponse(Cursor cursor) {
+        HttpResponse httpResponse = new HttpResponse(cursor.getString(DbConstants.HTTP_CACHE_TABLE_URL_INDEX));
+        // only response of 200 is cached, so code is not stored
+        httpResponse.setResponseCode(HttpURLConnection.HTTP_OK);
+        httpResponse.setResponseBody(cursor.getString(DbConstants.HTTP_CACHE_TABLE_RESPONSE_INDEX));
+        httpResponse.setExpiredTime(cursor.getLong(DbConstants.HTTP_CACHE_TABLE_EXPIRES_INDEX));
+        httpResponse.setType(cursor.getInt(DbConstants.HTTP_CACHE_TABLE_TYPE_INDEX));
+        httpResponse.setResponseHeader(HttpConstants.ETAG, cursor.getString(DbConstants.HTTP_CACHE_TABLE_ETAG_INDEX));
+        httpResponse.setResponseHeader(HttpConstants.LAST_MODIFIED,
+                                       cursor.getString(DbConstants.HTTP_CACHE_TABLE_LAST_MODIFIED_INDEX));
+        return httpResponse;
+    }
+
+    /**
+     * convert HttpResponse to ContentValues
+     * 
+     * @param httpResponse
+     * @return
+     */
+    private static ContentValues httpResponseToCV(HttpResponse httpResponse) {
+        ContentValues values = new ContentValues();
+        values.put(DbConstants.HTTP_CACHE_TABLE_URL, httpResponse.getUrl());
+        values.put(DbConstants.HTTP_CACHE_TABLE_RESPONSE, httpResponse.getResponseBody());
+        values.put(DbConstants.HTTP_CACHE_TABLE_EXPIRES, httpResponse.getExpiredTime());
+        values.put(DbConstants.HTTP_CACHE_TABLE_CREATE_TIME, System.currentTimeMillis());
+        values.put(DbConstants.HTTP_CACHE_TABLE_TYPE, httpResponse.getType());
+        values.put(DbConstants.HTTP_CACHE_TABLE_ETAG, httpResponse.getETag());
+        values.put(DbConstants.HTTP_CACHE_TABLE_LAST_MODIFIED, httpResponse.getLastModified());
+        return values;
+    }
+}
@@ -1,10 +1,14 @@
 package cn.trinea.android.common.dao.impl;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 import cn.trinea.android.common.constant.DbConstants;
 import cn.trinea.android.common.dao.ImageSDCardCacheDao;
 import cn.trinea.android.common.entity.CacheObject;
@@ -19,7 +23,24 @@ import cn.trinea.android.common.util.StringUtils;
  */
 public class ImageSDCardCacheDaoImpl implements ImageSDCardCacheDao {
 
-    private SqliteUtils sqliteUtils;
+    private static final String   TAG                       = "ImageSDCardCacheDao";
+
+    /** columns needed when load image sdcard cache, not include id and tag **/
+    private static final String[] LOAD_COLUMNS              = { DbConstants.IMAGE_SDCARD_CACHE_TABLE_URL,
+            DbConstants.IMAGE_SDCARD_CACHE_TABLE_PATH, DbConstants.IMAGE_SDCARD_CACHE_TABLE_LAST_USED_TIME,
+            DbConstants.IMAGE_SDCARD_CACHE_TABLE_USED_COUNT, DbConstants.IMAGE_SDCARD_CACHE_TABLE_PRIORITY,
+            DbConstants.IMAGE_SDCARD_CACHE_TABLE_IS_EXPIRED, DbConstants.IMAGE_SDCARD_CACHE_TABLE_IS_FOREVER };
+    private static final int      LOAD_URL_INDEX            = 0;
+    private static final int      LOAD_PATH_INDEX           = 1;
+    private static final int      LOAD_LAST_USED_TIME_INDEX = 2;
+    private static final int      LOAD_USED_COUNT_INDEX     = 3;
+    private static final int      LOAD_PRIORITY_INDEX       = 4;
+    private static final int      LOAD_IS_EXPIRED_INDEX     = 5;
+    private static final int      LOAD_IS_FOREVER_INDEX     = 6;
+    /** count of rows put into cache once when load **/
+    private static final int      LOAD_BATCH_SIZE           = 64;
+
+    private SqliteUtils           sqliteUtils;
 
     public ImageSDCardCacheDaoImpl(SqliteUtils sqliteUtils){
         this.sqliteUtils = sqliteUtils;
@@ -27,35 +48,55 @@ public class ImageSDCardCacheDaoImpl implements ImageSDCardCacheDao {
 
     @Override
     public boolean putIntoImageSDCardCache(ImageSDCardCache imageSDCardCache, String tag) {
+        return putIntoImageSDCardCache(imageSDCardCache, tag, 0, -1, null) >= 0;
+    }
+
+    @Override
+    public int putIntoImageSDCardCache(ImageSDCardCache imageSDCardCache, String tag, int offset, int limit,
+                                       Map<String, CacheObject<String>> loadedMap) {
         if (imageSDCardCache == null || StringUtils.isEmpty(tag)) {
-            return false;
+            return -1;
         }
 
         StringBuilder selection = new StringBuilder();
         selection.append(DbConstants.IMAGE_SDCARD_CACHE_TABLE_TAG).append("=?");
         String[] selectionArgs = { tag };
-        Cursor cursor = sqliteUtils.getRDb().query(DbConstants.IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME, null,
-                                                   selection.toString(), selectionArgs, null, null, null);
+        String orderBy = DbConstants.IMAGE_SDCARD_CACHE_TABLE_LAST_USED_TIME + " DESC";
+        // LIMIT of SQLiteQueryBuilder must be non-negative, so without limit rows before offset are skipped by cursor
+        String limitClause = (limit >= 0 ? (Math.max(offset, 0) + "," + limit) : null);
+        int startPosition = (limit < 0 ? Math.max(offset, 0) : 0);
+        Cursor cursor = sqliteUtils.getRDb().query(DbConstants.IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME, LOAD_COLUMNS,
+                                                   selection.toString(), selectionArgs, null, null, orderBy,
+                                                   limitClause);
         if (cursor == null) {
-            return true;
+            return 0;
         }
 
-        if (cursor != null && cursor.getCount() > 0) {
-            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                CacheObject<String> value = new CacheObject<String>();
-                String imageUrl = cursor.getString(DbConstants.IMAGE_SDCARD_CACHE_TABLE_URL_INDEX);
-                value.setData(cursor.getString(DbConstants.IMAGE_SDCARD_CACHE_TABLE_PATH_INDEX));
-                value.setUsedCount(cursor.getInt(DbConstants.IMAGE_SDCARD_CACHE_TABLE_USED_COUNT_INDEX));
-                value.setPriority(cursor.getInt(DbConstants.IMAGE_SDCARD_CACHE_TABLE_PRIORITY_INDEX));
-                value.setExpired(cursor.getInt(DbConstants.IMAGE_SDCARD_CACHE_TABLE_IS_EXPIRED_INDEX) == 1);
-                value.setForever(cursor.getInt(DbConstants.IMAGE_SDCARD_CACHE_TABLE_IS_FOREVER_INDEX) == 1);
-                imageSDCardCache.put(imageUrl, value);
+        int count = 0;
+        try {
+            Map<String, CacheObject<String>> batchMap = new LinkedHashMap<String, CacheObject<String>>();
+            for (cursor.moveToPosition(startPosition); !cursor.isAfterLast(); cursor.moveToNext()) {
+                String imageUrl = cursor.getString(LOAD_URL_INDEX);
+                batchMap.put(imageUrl, cursorToCacheObject(cursor));
+                if (loadedMap != null) {
+                    // cache object put into cache will be changed when used, so read another one
+                    loadedMap.put(imageUrl, cursorToCacheObject(cursor));
+                }
+                count++;
+                if (batchMap.size() >= LOAD_BATCH_SIZE) {
+                    imageSDCardCache.putAllRestored(batchMap);
+                    batchMap.clear();
+                }
+            }
+            if (!batchMap.isEmpty()) {
+                imageSDCardCache.putAllRestored(batchMap);
+            }
+        } finally {
+            if (!cursor.isClosed()) {
+                cursor.close();
             }
         }
-        if (cursor != null && !cursor.isClosed()) {
-            cursor.close();
-        }
-        return true;
+        return count;
     }
 
     @Override
@@ -65,47 +106,131 @@ public class ImageSDCardCacheDaoImpl implements ImageSDCardCacheDao {
         }
 
         SQLiteDatabase db = sqliteUtils.getWDb();
+        SQLiteStatement deleteStatement = null, insertStatement = null;
         db.beginTransaction();
         try {
-            StringBuilder whereClause = new StringBuilder();
-            whereClause.append(DbConstants.IMAGE_SDCARD_CACHE_TABLE_TAG).append("=?");
-            String[] whereArgs = { tag };
-            db.delete(DbConstants.IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME, whereClause.toString(), whereArgs);
+            deleteStatement = db.compileStatement(DbConstants.IMAGE_SDCARD_CACHE_TABLE_DELETE_BY_TAG_SQL.toString());
+            deleteStatement.bindString(1, tag);
+            deleteStatement.execute();
 
+            // all in one transaction, partial rows of tag would make UnusedFileSweeper delete files still in use
+            insertStatement = db.compileStatement(DbConstants.IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.toString());
             String key;
             CacheObject<String> value;
             for (Entry<String, CacheObject<String>> entry : imageSDCardCache.entrySet()) {
                 if (entry != null && (key = entry.getKey()) != null && (value = entry.getValue()) != null) {
-                    db.insert(DbConstants.IMAGE_SDCARD_CACHE_TABLE_TABLE_NAME, null, cacheObjectToCV(tag, key, value));
+                    bindCacheObject(insertStatement, tag, key, value);
+                    insertStatement.executeInsert();
                 }
             }
 
             db.setTransactionSuccessful();
             return true;
         } catch (Exception e) {
+            Log.e(TAG, "rewrite image sdcard cache fail, tag is:" + tag, e);
             return false;
         } finally {
             db.endTransaction();
+            SqliteUtils.closeStatement(deleteStatement);
+            SqliteUtils.closeStatement(insertStatement);
         }
     }
 
+    @Override
+    public boolean updateImageSDCardCache(Map<String, CacheObject<String>> changedMap, Collection<String> removedUrls,
+                                          String tag) {
+        if (StringUtils.isEmpty(tag)) {
+            return false;
+        }
+
+        SQLiteDatabase db = sqliteUtils.getWDb();
+        SQLiteStatement deleteStatement = null, insertStatement = null;
+        db.beginTransaction();
+        try {
+            deleteStatement = db.compileStatement(DbConstants.IMAGE_SDCARD_CACHE_TABLE_DELETE_BY_URL_SQL.toString());
+            int count = 0;
+            if (removedUrls != null) {
+                for (String url : removedUrls) {
+                    if (url != null) {
+                        deleteStatement.bindString(1, tag);
+                        deleteStatement.bindString(2, url);
+                        deleteStatement.execute();
+                        if (++count % SqliteUtils.WRITE_BATCH_SIZE == 0) {
+                            sqliteUtils.commitAndBeginTransaction(db);
+                        }
+                    }
+                }
+            }
+
+            if (changedMap != null) {
+                insertStatement = db.compileStatement(DbConstants.IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL.toString());
+                String key;
+                CacheObject<String> value;
+                for (Entry<String, CacheObject<String>> entry : changedMap.entrySet()) {
+                    if (entry != null && (key = entry.getKey()) != null && (value = entry.getValue()) != null) {
+                        // upsert, delete the old row and insert new one
+                        deleteStatement.bindString(1, tag);
+                        deleteStatement.bindString(2, key);
+                        deleteStatement.execute();
+                        bindCacheObject(insertStatement, tag, key, value);
+                        insertStatement.executeInsert();
+                        if (++count % SqliteUtils.WRITE_BATCH_SIZE == 0) {
+                            sqliteUtils.commitAndBeginTransaction(db);
+                        }
+                    }
+                }
+            }
+
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "update image sdcard cache fail, tag is:" + tag, e);
+            return false;
+        } finally {
+            db.endTransaction();
+            SqliteUtils.closeStatement(deleteStatement);
+            SqliteUtils.closeStatement(insertStatement);
+        }
+    }
+
+    /**
+     * read cache object from current row of cursor queried with {@link #LOAD_COLUMNS}
+     * 
+     * @param cursor
+     * @return
+     */
+    private static CacheObject<String> cursorToCacheObject(Cursor cursor) {
+        CacheObject<String> value = new CacheObject<String>();
+        value.setData(cursor.getString(LOAD_PATH_INDEX));
+        value.setLastUsedTime(cursor.getLong(LOAD_LAST_USED_TIME_INDEX));
+        value.setUsedCount(cursor.getInt(LOAD_USED_COUNT_INDEX));
+        value.setPriority(cursor.getInt(LOAD_PRIORITY_INDEX));
+        value.setExpired(cursor.getInt(LOAD_IS_EXPIRED_INDEX) == 1);
+        value.setForever(cursor.getInt(LOAD_IS_FOREVER_INDEX) == 1);
+        return value;
+    }
+
     /**
+     * bind values to statement compiled from {@link DbConstants#IMAGE_SDCARD_CACHE_TABLE_INSERT_SQL}
+     * 
+     * @param statement
      * @param tag
      * @param url
      * @param value
-     * @return
      */
-    private static ContentValues cacheObjectToCV(String tag, String url, CacheObject<String> value) {
-        ContentValues values = new ContentValues();
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_TAG, tag);
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_URL, url);
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_PATH, value.getData());
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_ENTER_TIME, value.getEnterTime());
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_LAST_USED_TIME, value.getLastUsedTime());
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_USED_COUNT, value.getUsedCount());
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_PRIORITY, value.getPriority());
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_IS_EXPIRED, value.isExpired() ? 1 : 0);
-        values.put(DbConstants.IMAGE_SDCARD_CACHE_TABLE_IS_FOREVER, value.isForever() ? 1 : 0);
-        return values;
+    private static void bindCacheObject(SQLiteStatement statement, String tag, String url, CacheObject<String> value) {
+        statement.bindString(1, tag);
+        statement.bindString(2, url);
+        if (value.getData() == null) {
+            statement.bindNull(3);
+        } else {
+            statement.bindString(3, value.getData());
+        }
+        statement.bindLong(4, value.getEnterTime());
+        statement.bindLong(5, value.getLastUsedTime());
+        statement.bindLong(6, value.getUsedCount());
+        statement.bindLong(7, value.getPriority());
+        statement.bindLong(8, value.isExpired() ? 1 : 0);
+        statement.bindLong(9, value.isForever() ? 1 : 0);
     }
 }
@@ -0,0 +1,267 @@
+package cn.trinea.android.common.entity;
+
+/**
+ * <strong>CacheControl</strong><br/>
+ * <br/>
+ * Cache-Control header of http response, parsed once by {@link #parse(String)}.<br/>
+ * <ul>
+ * <strong>Get</strong>
+ * <li>{@link #getMaxAge()} and {@link #getSMaxAge()}</li>
+ * <li>{@link #getStaleWhileRevalidate()} and {@link #getStaleIfError()}</li>
+ * <li>{@link #isNoCache()}, {@link #isNoStore()} and {@link #isMustRevalidate()}</li>
+ * <li>{@link #isProxyRevalidate()}, {@link #isPublic()}, {@link #isPrivate()}, {@link #isNoTransform()} and
+ * {@link #isImmutable()}</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Directive name is case-insensitive, value can be quoted</li>
+ * <li>Seconds not a valid number is ignored, seconds too large is treated as {@link Integer#MAX_VALUE}</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-25
+ */
+public class CacheControl {
+
+    /** no Cache-Control header **/
+    public static final CacheControl EMPTY                = new CacheControl();
+
+    /** seconds, -1 represents not exist **/
+    private int                      maxAge               = -1;
+    /** seconds, -1 represents not exist **/
+    private int                      sMaxAge              = -1;
+    /** seconds, -1 represents not exist **/
+    private int                      staleWhileRevalidate = -1;
+    /** seconds, -1 represents not exist **/
+    private int                      staleIfError         = -1;
+    private boolean                  isNoCache;
+    private boolean                  isNoStore;
+    private boolean                  isMustRevalidate;
+    private boolean                  isProxyRevalidate;
+    private boolean                  isPublic;
+    private boolean                  isPrivate;
+    private boolean                  isNoTransform;
+    private boolean                  isImmutable;
+
+    private CacheControl(){
+    }
+
+    /**
+     * parse Cache-Control header
+     * 
+     * @param header likes max-age=60, must-revalidate
+     * @return {@link #EMPTY} if header is null or empty
+     */
+    public static CacheControl parse(String header) {
+        if (header == null || header.length() == 0) {
+            return EMPTY;
+        }
+
+        CacheControl cacheControl = new CacheControl();
+        int length = header.length(), i = 0;
+        while (i < length) {
+            // directive name
+            i = skipSeparator(header, i);
+            int nameStart = i;
+            while (i < length && header.charAt(i) != '=' && header.charAt(i) != ',' && header.charAt(i) != ' ') {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < length && header.charAt(i) == ' ') {
+                i++;
+            }
+
+            // directive value, may be quoted
+            int valueStart = -1, valueEnd = -1;
+            if (i < length && header.charAt(i) == '=') {
+                i++;
+                while (i < length && header.charAt(i) == ' ') {
+                    i++;
+                }
+                if (i < length && header.charAt(i) == '"') {
+                    valueStart = ++i;
+                    while (i < length && header.charAt(i) != '"') {
+                        i++;
+                    }
+                    valueEnd = i;
+                    i++;
+                } else {
+                    valueStart = i;
+                    while (i < length && header.charAt(i) != ',' && header.charAt(i) != ' ') {
+                        i++;
+                    }
+                    valueEnd = i;
+                }
+            }
+            while (i < length && header.charAt(i) != ',') {
+                i++;
+            }
+
+            if (nameEnd > nameStart) {
+                cacheControl.setDirective(header, nameStart, nameEnd, valueStart, valueEnd);
+            }
+        }
+        return cacheControl;
+    }
+
+    /**
+     * set directive between start and end of header
+     * 
+     * @param header
+     * @param nameStart
+     * @param nameEnd
+     * @param valueStart -1 represents no value
+     * @param valueEnd
+     */
+    private void setDirective(String header, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (isName(header, nameStart, nameEnd, "max-age")) {
+            maxAge = parseSeconds(header, valueStart, valueEnd);
+        } else if (isName(header, nameStart, nameEnd, "s-maxage")) {
+            sMaxAge = parseSeconds(header, valueStart, valueEnd);
+        } else if (isName(header, nameStart, nameEnd, "stale-while-revalidate")) {
+            staleWhileRevalidate = parseSeconds(header, valueStart, valueEnd);
+        } else if (isName(header, nameStart, nameEnd, "stale-if-error")) {
+            staleIfError = parseSeconds(header, valueStart, valueEnd);
+        } else if (isName(header, nameStart, nameEnd, "no-cache")) {
+            isNoCache = true;
+        } else if (isName(header, nameStart, nameEnd, "no-store")) {
+            isNoStore = true;
+        } else if (isName(header, nameStart, nameEnd, "must-revalidate")) {
+            isMustRevalidate = true;
+        } else if (isName(header, nameStart, nameEnd, "proxy-revalidate")) {
+            isProxyRevalidate = true;
+        } else if (isName(header, nameStart, nameEnd, "public")) {
+            isPublic = true;
+        } else if (isName(header, nameStart, nameEnd, "private")) {
+            isPrivate = true;
+        } else if (isName(header, nameStart, nameEnd, "no-transform")) {
+            isNoTransform = true;
+        } else if (isName(header, nameStart, nameEnd, "immutable")) {
+            isImmutable = true;
+        }
+    }
+
+    private static boolean isName(String header, int start, int end, String name) {
+        return end - start == name.length() && header.regionMatches(true, start, name, 0, name.length());
+    }
+
+    /**
+     * parse delta seconds
+     * 
+     * @param header
+     * @param start
+     * @param end
+     * @return -1 represents not a valid number
+     */
+    private static int parseSeconds(String header, int start, int end) {
+        if (start < 0 || start >= end) {
+            return -1;
+        }
+        long seconds = 0;
+        for (int i = start; i < end; i++) {
+            char c = header.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (seconds < Integer.MAX_VALUE) {
+                seconds = seconds * 10 + (c - '0');
+            }
+        }
+        return seconds > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)seconds;
+    }
+
+    private static int skipSeparator(String header, int index) {
+        int length = header.length();
+        while (index < length && (header.charAt(index) == ',' || header.charAt(index) == ' ')) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * max-age in seconds
+     * 
+     * @return -1 represents not exist
+     */
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * s-maxage in seconds, max age for shared cache
+     * 
+     * @return -1 represents not exist
+     */
+    public int getSMaxAge() {
+        return sMaxAge;
+    }
+
+    /**
+     * stale-while-revalidate in seconds, response can be used after expired while revalidating in background
+     * 
+     * @return -1 represents not exist
+     */
+    public int getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * stale-if-error in seconds, response can be used after expired when revalidating fail
+     * 
+     * @return -1 represents not exist
+     */
+    public int getStaleIfError() {
+        return staleIfError;
+    }
+
+    /**
+     * whether response must be revalidated before each use
+     * 
+     * @return
+     */
+    public boolean isNoCache() {
+        return isNoCache;
+    }
+
+    /**
+     * whether response must not be stored
+     * 
+     * @return
+     */
+    public boolean isNoStore() {
+        return isNoStore;
+    }
+
+    /**
+     * whether response must not be used after expired without revalidating
+     * 
+     * @return
+     */
+    public boolean isMustRevalidate() {
+        return isMustRevalidate;
+    }
+
+    public boolean isProxyRevalidate() {
+        return isProxyRevalidate;
+    }
+
+    public boolean isPublic() {
+        return isPublic;
+    }
+
+    public boolean isPrivate() {
+        return isPrivate;
+    }
+
+    public boolean isNoTransform() {
+        return isNoTransform;
+    }
+
+    /**
+     * whether response will not change before expired, so it need not be revalidated
+     * 
+     * @return
+     */
+    public boolean isImmutable() {
+        return isImmutable;
+    }
+}
@@ -0,0 +1,215 @@
+package cn.trinea.android.common.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <strong>FormBody</strong><br/>
+ * <br/>
+ * Body of application/x-www-form-urlencoded paras, percent-encoded in UTF-8 directly to output stream without
+ * intermediate string.<br/>
+ * <ul>
+ * <strong>Setting</strong>
+ * <li>{@link #add(String, String)} add para, name and value will be encoded</li>
+ * <li>{@link #addEncoded(String, String)} add para encoded already, written as it is</li>
+ * <li>{@link #addAllEncoded(Map)}</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Encoded like {@link java.net.URLEncoder} with UTF-8, letters, digits and <code>-_.*</code> are not encoded,
+ * space is encoded to <code>+</code></li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-26
+ */
+public class FormBody extends HttpBody {
+
+    public static final String  CONTENT_TYPE  = "application/x-www-form-urlencoded; charset=UTF-8";
+
+    private static final char[] HEX_DIGITS    = "0123456789ABCDEF".toCharArray();
+
+    private List<String>        names         = new ArrayList<String>();
+    private List<String>        values        = new ArrayList<String>();
+    private List<Boolean>       isEncodeds    = new ArrayList<Boolean>();
+    /** length of body, -1 represents not computed **/
+    private long                contentLength = -1;
+
+    /**
+     * add para, name and value will be percent-encoded when written
+     * 
+     * @param name
+     * @param value null will be written as empty
+     * @return this
+     */
+    public FormBody add(String name, String value) {
+        return add(name, value, false);
+    }
+
+    /**
+     * add para encoded already, name and value are written as they are
+     * 
+     * @param name
+     * @param value null will be written as empty
+     * @return this
+     */
+    public FormBody addEncoded(String name, String value) {
+        return add(name, value, true);
+    }
+
+    /**
+     * add all paras encoded already, like {@link HttpRequest#getParas()}
+     * 
+     * @param parasMap
+     * @return this
+     */
+    public FormBody addAllEncoded(Map<String, String> parasMap) {
+        if (parasMap != null) {
+            for (Map.Entry<String, String> entry : parasMap.entrySet()) {
+                addEncoded(entry.getKey(), entry.getValue());
+            }
+        }
+        return this;
+    }
+
+    private FormBody add(String name, String value, boolean isEncoded) {
+        if (name == null) {
+            throw new IllegalArgumentException("The name can not be null.");
+        }
+        names.add(name);
+        values.add(value == null ? "" : value);
+        isEncodeds.add(isEncoded);
+        contentLength = -1;
+        return this;
+    }
+
+    /**
+     * get count of paras
+     * 
+     * @return
+     */
+    public int size() {
+        return names.size();
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public long getContentLength() {
+        if (contentLength == -1) {
+            try {
+                contentLength = writeOrCount(null);
+            } catch (IOException e) {
+                // never happen when only count
+                return -1;
+            }
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        writeOrCount(output);
+    }
+
+    /**
+     * write body to output stream, or only count its length if output stream is null
+     * 
+     * @param output
+     * @return length of body
+     * @throws IOException
+     */
+    private long writeOrCount(OutputStream output) throws IOException {
+        long length = 0;
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                length += writeByte(output, '&');
+            }
+            boolean isEncoded = isEncodeds.get(i);
+            length += write(output, names.get(i), isEncoded);
+            length += writeByte(output, '=');
+            length += write(output, values.get(i), isEncoded);
+        }
+        return length;
+    }
+
+    /**
+     * write string in UTF-8, percent-encoded if not encoded
+     * 
+     * @param output null represents only count
+     * @param s
+     * @param isEncoded
+     * @return count of bytes
+     * @throws IOException
+     */
+    private static long write(OutputStream output, String s, boolean isEncoded) throws IOException {
+        long length = 0;
+        int size = s.length();
+        for (int i = 0; i < size; i++) {
+            int c = s.charAt(i);
+            if (c < 0x80) {
+                if (isEncoded || isUnreserved(c)) {
+                    length += writeByte(output, c);
+                } else if (c == ' ') {
+                    length += writeByte(output, '+');
+                } else {
+                    length += writeEncodedByte(output, c);
+                }
+                continue;
+            }
+
+            // utf-8 bytes of char, surrogate pair is one code point
+            if (Character.isHighSurrogate((char)c) && i + 1 < size && Character.isLowSurrogate(s.charAt(i + 1))) {
+                c = Character.toCodePoint((char)c, s.charAt(++i));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                c = '?';
+            }
+            if (c < 0x80) {
+                length += (isEncoded ? writeByte(output, c) : writeEncodedByte(output, c));
+            } else if (c < 0x800) {
+                length += writeUtf8Byte(output, 0xC0 | (c >> 6), isEncoded);
+                length += writeUtf8Byte(output, 0x80 | (c & 0x3F), isEncoded);
+            } else if (c < 0x10000) {
+                length += writeUtf8Byte(output, 0xE0 | (c >> 12), isEncoded);
+                length += writeUtf8Byte(output, 0x80 | ((c >> 6) & 0x3F), isEncoded);
+                length += writeUtf8Byte(output, 0x80 | (c & 0x3F), isEncoded);
+            } else {
+                length += writeUtf8Byte(output, 0xF0 | (c >> 18), isEncoded);
+                length += writeUtf8Byte(output, 0x80 | ((c >> 12) & 0x3F), isEncoded);
+                length += writeUtf8Byte(output, 0x80 | ((c >> 6) & 0x3F), isEncoded);
+                length += writeUtf8Byte(output, 0x80 | (c & 0x3F), isEncoded);
+            }
+        }
+        return length;
+    }
+
+    private static boolean isUnreserved(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+               || c == '.' || c == '*';
+    }
+
+    private static int writeUtf8Byte(OutputStream output, int b, boolean isEncoded) throws IOException {
+        return isEncoded ? writeByte(output, b) : writeEncodedByte(output, b);
+    }
+
+    private static int writeEncodedByte(OutputStream output, int b) throws IOException {
+        if (output != null) {
+            output.write('%');
+            output.write(HEX_DIGITS[(b >> 4) & 0x0F]);
+            output.write(HEX_DIGITS[b & 0x0F]);
+        }
+        return 3;
+    }
+
+    private static int writeByte(OutputStream output, int b) throws IOException {
+        if (output != null) {
+            output.write(b);
+        }
+        return 1;
+    }
+}
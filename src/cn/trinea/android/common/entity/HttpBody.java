@@ -0,0 +1,49 @@
+package cn.trinea.android.common.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import cn.trinea.android.common.util.HttpUtils;
+
+/**
+ * <strong>HttpBody</strong><br/>
+ * <br/>
+ * Body of http post, written to output stream of connection directly, see {@link HttpRequest#setBody(HttpBody)}.<br/>
+ * <ul>
+ * <strong>Implements</strong>
+ * <li>{@link FormBody} application/x-www-form-urlencoded paras</li>
+ * <li>{@link MultipartBody} multipart/form-data paras and files</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>If {@link #getContentLength()} is known, {@link HttpUtils} sends body in fixed-length streaming mode, so it's
+ * not buffered in memory, else in chunked streaming mode</li>
+ * <li>{@link #writeTo(OutputStream)} may be called more than once, so body should be repeatable</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-26
+ */
+public abstract class HttpBody {
+
+    /**
+     * get Content-Type of body
+     * 
+     * @return
+     */
+    public abstract String getContentType();
+
+    /**
+     * get length of body in bytes
+     * 
+     * @return -1 represents unknown
+     */
+    public abstract long getContentLength();
+
+    /**
+     * write body to output stream, output stream is not closed
+     * 
+     * @param output
+     * @throws IOException
+     */
+    public abstract void writeTo(OutputStream output) throws IOException;
+}
@@ -12,6 +12,7 @@ import cn.trinea.android.common.util.HttpUtils;
  * <strong>Constructor</strong>
  * <li>{@link HttpRequest#HttpRequest(String)}</li>
  * <li>{@link HttpRequest#HttpRequest(String, Map)}</li>
+ * <li>{@link HttpRequest#HttpRequest(HttpRequest)} copy another request</li>
  * </ul>
  * <ul>
  * <strong>Setting</strong>
@@ -21,6 +22,11 @@ import cn.trinea.android.common.util.HttpUtils;
  * <li>{@link #setUserAgent(String)}</li>
  * <li>{@link #setRequestProperty(String, String)}</li>
  * <li>{@link #setRequestPropertys(Map)}</li>
+ * <li>{@link #setBody(HttpBody)} set post body, like {@link FormBody} and {@link MultipartBody}</li>
+ * <li>{@link #setGzipParas(boolean)}</li>
+ * <li>{@link #setRetryCount(int)}</li>
+ * <li>{@link #setPriority(int)} and {@link #setTag(Object)} used when scheduled by
+ * {@link cn.trinea.android.common.service.impl.HttpDispatcher}</li>
  * </ul>
  * 
  * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-5-12
@@ -32,6 +38,16 @@ public class HttpRequest {
     private int                 readTimeout;
     private Map<String, String> parasMap;
     private Map<String, String> requestPropertys;
+    /** body of post, paras map is ignored if it's not null **/
+    private HttpBody            body;
+    /** whether to compress paras by gzip when post **/
+    private boolean             isGzipParas;
+    /** priority used when scheduled asynchronously, the bigger, the earlier **/
+    private int                 priority;
+    /** tag to mark this request, can be used to cancel requests **/
+    private Object              tag;
+    /** max count of retries when http get fails for network or server error **/
+    private int                 retryCount;
 
     public HttpRequest(String url){
         this.url = url;
@@ -48,6 +64,28 @@ public class HttpRequest {
         requestPropertys = new HashMap<String, String>();
     }
 
+    /**
+     * copy all fields of request, paras map and request properties are copied, body and tag are shared
+     * 
+     * @param request
+     */
+    public HttpRequest(HttpRequest request){
+        this.url = request.url;
+        this.connectTimeout = request.connectTimeout;
+        this.readTimeout = request.readTimeout;
+        if (request.parasMap != null) {
+            this.parasMap = new HashMap<String, String>(request.parasMap);
+        }
+        if (request.requestPropertys != null) {
+            this.requestPropertys = new HashMap<String, String>(request.requestPropertys);
+        }
+        this.body = request.body;
+        this.isGzipParas = request.isGzipParas;
+        this.priority = request.priority;
+        this.tag = request.tag;
+        this.retryCount = request.retryCount;
+    }
+
     public String getUrl() {
         return url;
     }
@@ -115,6 +153,25 @@ public class HttpRequest {
         return HttpUtils.joinParas(parasMap);
     }
 
+    /**
+     * get body of post
+     * 
+     * @return
+     */
+    public HttpBody getBody() {
+        return body;
+    }
+
+    /**
+     * set body of post, it's written to connection directly without buffered. If not null, paras map is ignored when
+     * post
+     * 
+     * @param body
+     */
+    public void setBody(HttpBody body) {
+        this.body = body;
+    }
+
     /**
      * @param field
      * @param newValue
@@ -155,4 +212,76 @@ public class HttpRequest {
     public void setRequestPropertys(Map<String, String> requestPropertys) {
         this.requestPropertys = requestPropertys;
     }
+
+    /**
+     * whether to compress paras by gzip when post, default is false
+     * 
+     * @return
+     */
+    public boolean isGzipParas() {
+        return isGzipParas;
+    }
+
+    /**
+     * set whether to compress paras by gzip when post, default is false. Only paras not smaller than
+     * {@link HttpUtils#MIN_GZIP_PARAS_SIZE} will be compressed, and server must support Content-Encoding: gzip
+     * 
+     * @param isGzipParas
+     */
+    public void setGzipParas(boolean isGzipParas) {
+        this.isGzipParas = isGzipParas;
+    }
+
+    /**
+     * get priority used when scheduled asynchronously, default is 0
+     * 
+     * @return
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * set priority used when scheduled asynchronously, the bigger, the earlier. default is 0. It should be set before
+     * request is scheduled, changing it later has no effect
+     * 
+     * @param priority
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public Object getTag() {
+        return tag;
+    }
+
+    /**
+     * set tag to mark this request, requests of the same tag can be canceled by
+     * {@link cn.trinea.android.common.service.impl.HttpDispatcher#cancelAll(Object)}
+     * 
+     * @param tag
+     */
+    public void setTag(Object tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * get max count of retries when http get fails for network or server error, default is 0
+     * 
+     * @return
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * set max count of retries when http get fails for network or server error, default is 0. post is not retried
+     * because it's not idempotent
+     * 
+     * @param retryCount
+     * @see HttpUtils#httpGet(HttpRequest)
+     */
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
 }
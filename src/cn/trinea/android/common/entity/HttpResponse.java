@@ -1,6 +1,12 @@
 package cn.trinea.android.common.entity;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import cn.trinea.android.common.constant.HttpConstants;
@@ -13,31 +19,65 @@ import cn.trinea.android.common.util.StringUtils;
  * <strong>Constructor</strong>
  * <li>{@link HttpResponse#HttpResponse()}</li>
  * <li>{@link HttpResponse#HttpResponse(String)}</li>
+ * <li>{@link HttpResponse#HttpResponse(HttpResponse)} copy another response</li>
  * </ul>
  * <ul>
  * <strong>Get</strong>
- * <li>{@link #getResponseBody()}</li>
+ * <li>{@link #getResponseBody()} decoded with charset in Content-Type when first called</li>
+ * <li>{@link #getResponseBytes()} and {@link #getResponseStream()} raw bytes of body</li>
+ * <li>{@link #getContentType()} and {@link #getCharset()}</li>
+ * <li>{@link #getContentEncoding()}, {@link #getWireSize()} and {@link #getDecodedSize()}</li>
  * <li>{@link #getUrl()}</li>
  * <li>{@link #getExpiresInMillis()} expires time</li>
  * <li>{@link #getExpiresHeader()}</li>
+ * <li>{@link #getCacheControlHeader()}</li>
+ * <li>{@link #getCacheControl()} all directives of Cache-Control</li>
  * <li>{@link #getCacheControlMaxAge()}</li>
+ * <li>{@link #getCacheControlStaleWhileRevalidate()} and {@link #getCacheControlStaleIfError()}</li>
+ * <li>{@link #getETag()} and {@link #getLastModified()} used to revalidate</li>
+ * <li>{@link #isNotModified()}</li>
+ * <li>{@link #getExpiresHeaderInMillis()}, {@link #getDateHeaderInMillis()} and {@link #getAgeHeader()}</li>
+ * <li>{@link #getExpiredTime()} expired time saved when got from network or cache</li>
+ * <li>{@link #isExpired()}</li>
+ * <li>{@link #isInCache()} whether got from cache</li>
  * </ul>
  * <ul>
  * <strong>Setting</strong>
  * <li>{@link #setUrl(String)}</li>
  * <li>{@link #setResponseBody(String)}</li>
+ * <li>{@link #setResponseBytes(byte[])}</li>
  * <li>{@link #setResponseHeader(String, String)}</li>
  * <li>{@link #setResponseHeaders(Map)}</li>
  * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Cache-Control, Expires, Date and Age are parsed together when one of them is first used, and parsed again
+ * only after headers changed</li>
+ * </ul>
  * 
  * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-5-12
  */
 public class HttpResponse {
 
+    /** default charset used to decode body if no charset in content-type **/
+    public static final String  DEFAULT_CHARSET = "UTF-8";
+
     private String              url;
     /** http response content **/
     private String              responseBody;
+    /** raw bytes of http response content **/
+    private byte[]              responseBytes;
     private Map<String, Object> responseHeaders;
+    /** type to mark this response, saved to cache **/
+    private int                 type;
+    /** expired time in mills, -1 represents not cacheable **/
+    private long                expiredTime     = -1;
+    /** whether this response is got from cache **/
+    private boolean             isInCache;
+    /** size of body transferred on network, may be compressed **/
+    private long                wireSize        = -1;
+    /** size of body after decoded **/
+    private long                decodedSize     = -1;
 
     /**
      * An <code>int</code> representing the three digit HTTP Status-Code.
@@ -49,7 +89,17 @@ public class HttpResponse {
      * <li>5xx: Server Error
      * </ul>
      */
-    private int                 responseCode = -1;
+    private int                 responseCode    = -1;
+
+    /** whether headers below are parsed from {@link #responseHeaders} **/
+    private volatile boolean    isHeaderParsed;
+    private CacheControl        cacheControl;
+    /** expires in header, in mills, -1 represents not exist or invalid **/
+    private long                expiresHeaderTime;
+    /** date in header, in mills, -1 represents not exist or invalid **/
+    private long                dateHeaderTime;
+    /** age in header, in seconds, -1 represents not exist or invalid **/
+    private int                 ageHeader;
 
     public HttpResponse(String url){
         this.url = url;
@@ -60,6 +110,33 @@ public class HttpResponse {
         responseHeaders = new HashMap<String, Object>();
     }
 
+    /**
+     * copy all fields of response, headers are copied, but body bytes are shared
+     * 
+     * @param response
+     */
+    public HttpResponse(HttpResponse response){
+        url = response.url;
+        responseBody = response.responseBody;
+        responseBytes = response.responseBytes;
+        if (response.responseHeaders != null) {
+            responseHeaders = new HashMap<String, Object>(response.responseHeaders);
+        }
+        type = response.type;
+        expiredTime = response.expiredTime;
+        isInCache = response.isInCache;
+        wireSize = response.wireSize;
+        decodedSize = response.decodedSize;
+        responseCode = response.responseCode;
+        if (response.isHeaderParsed) {
+            cacheControl = response.cacheControl;
+            expiresHeaderTime = response.expiresHeaderTime;
+            dateHeaderTime = response.dateHeaderTime;
+            ageHeader = response.ageHeader;
+            isHeaderParsed = true;
+        }
+    }
+
     public String getUrl() {
         return url;
     }
@@ -68,12 +145,173 @@ public class HttpResponse {
         this.url = url;
     }
 
+    /**
+     * get response body, decoded from {@link #getResponseBytes()} with {@link #getCharset()} when first called
+     * 
+     * @return
+     */
     public String getResponseBody() {
+        if (responseBody == null && responseBytes != null) {
+            try {
+                responseBody = new String(responseBytes, getCharset());
+            } catch (UnsupportedEncodingException e) {
+                responseBody = new String(responseBytes, Charset.forName(DEFAULT_CHARSET));
+            }
+        }
         return responseBody;
     }
 
     public void setResponseBody(String responseBody) {
         this.responseBody = responseBody;
+        this.responseBytes = null;
+    }
+
+    /**
+     * get raw bytes of response body, not copied, so do not modify it
+     * 
+     * @return
+     */
+    public byte[] getResponseBytes() {
+        if (responseBytes == null && responseBody != null) {
+            try {
+                responseBytes = responseBody.getBytes(getCharset());
+            } catch (UnsupportedEncodingException e) {
+                responseBytes = responseBody.getBytes(Charset.forName(DEFAULT_CHARSET));
+            }
+        }
+        return responseBytes;
+    }
+
+    /**
+     * set raw bytes of response body, string body will be decoded from it when {@link #getResponseBody()}
+     * 
+     * @param responseBytes
+     */
+    public void setResponseBytes(byte[] responseBytes) {
+        this.responseBytes = responseBytes;
+        this.responseBody = null;
+    }
+
+    /**
+     * get response body as stream, read from {@link #getResponseBytes()} without copy
+     * 
+     * @return null represents no body
+     */
+    public InputStream getResponseStream() {
+        byte[] bytes = getResponseBytes();
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * get size of body transferred on network, may be compressed
+     * 
+     * @return -1 represents body is not read from network
+     */
+    public long getWireSize() {
+        return wireSize;
+    }
+
+    public void setWireSize(long wireSize) {
+        this.wireSize = wireSize;
+    }
+
+    /**
+     * get size of body after decoded, same to {@link #getWireSize()} if body is not compressed
+     * 
+     * @return -1 represents body is not read from network
+     */
+    public long getDecodedSize() {
+        return decodedSize;
+    }
+
+    public void setDecodedSize(long decodedSize) {
+        this.decodedSize = decodedSize;
+    }
+
+    /**
+     * http content-encoding in reponse header
+     * 
+     * @return null represents http error or no content-encoding in response headers
+     */
+    public String getContentEncoding() {
+        return getStringHeader(HttpConstants.CONTENT_ENCODING);
+    }
+
+    /**
+     * http content-type in reponse header
+     * 
+     * @return null represents http error or no content-type in response headers
+     */
+    public String getContentType() {
+        return getStringHeader(HttpConstants.CONTENT_TYPE);
+    }
+
+    /**
+     * get charset in content-type
+     * 
+     * @return charset in content-type, if not exist, return {@link #DEFAULT_CHARSET}
+     */
+    public String getCharset() {
+        String contentType = getContentType();
+        if (contentType != null) {
+            int start = contentType.toLowerCase(Locale.ENGLISH).indexOf("charset=");
+            if (start != -1) {
+                start += "charset=".length();
+                int end = contentType.indexOf(';', start);
+                String charset = (end == -1 ? contentType.substring(start) : contentType.substring(start, end)).trim();
+                if (charset.length() > 1 && charset.charAt(0) == '"') {
+                    charset = charset.substring(1, charset.length() - (charset.endsWith("\"") ? 1 : 0));
+                }
+                if (charset.length() > 0) {
+                    return charset;
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    /**
+     * get expired time in mills, set by {@link HttpUtils#httpGet(HttpRequest)} according to
+     * {@link #getExpiresInMillis()}
+     * 
+     * @return -1 represents not cacheable
+     */
+    public long getExpiredTime() {
+        return expiredTime;
+    }
+
+    public void setExpiredTime(long expiredTime) {
+        this.expiredTime = expiredTime;
+    }
+
+    /**
+     * whether expired, compare {@link #getExpiredTime()} with current time
+     * 
+     * @return
+     */
+    public boolean isExpired() {
+        return System.currentTimeMillis() > expiredTime;
+    }
+
+    /**
+     * whether this response is got from cache
+     * 
+     * @return
+     */
+    public boolean isInCache() {
+        return isInCache;
+    }
+
+    public void setInCache(boolean isInCache) {
+        this.isInCache = isInCache;
     }
 
     /**
@@ -108,6 +346,7 @@ public class HttpResponse {
 
     public void setResponseHeaders(Map<String, Object> responseHeaders) {
         this.responseHeaders = responseHeaders;
+        this.isHeaderParsed = false;
     }
 
     /**
@@ -124,56 +363,175 @@ public class HttpResponse {
         }
     }
 
+    /**
+     * http etag in reponse header
+     * 
+     * @return null represents http error or no etag in response headers
+     */
+    public String getETag() {
+        return getStringHeader(HttpConstants.ETAG);
+    }
+
+    /**
+     * http last-modified in reponse header
+     * 
+     * @return null represents http error or no last-modified in response headers
+     */
+    public String getLastModified() {
+        return getStringHeader(HttpConstants.LAST_MODIFIED);
+    }
+
+    /**
+     * whether response code is 304, means response of conditional request is not modified, body is empty
+     * 
+     * @return
+     */
+    public boolean isNotModified() {
+        return responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
     /**
      * http cache-control in reponse header
      * 
-     * @return -1 represents http error or no cache-control in response headers, or max-age in seconds
+     * @return null represents http error or no cache-control in response headers
      */
-    public int getCacheControlMaxAge() {
+    public String getCacheControlHeader() {
         try {
-            String cacheControl = (String)responseHeaders.get(HttpConstants.CACHE_CONTROL);
-            if (!StringUtils.isEmpty(cacheControl)) {
-                int start = cacheControl.indexOf("max-age=");
-                if (start != -1) {
-                    int end = cacheControl.indexOf(",", start);
-                    String maxAge;
-                    if (end != -1) {
-                        maxAge = cacheControl.substring(start + "max-age=".length(), end);
-                    } else {
-                        maxAge = cacheControl.substring(start + "max-age=".length());
-                    }
-                    return Integer.parseInt(maxAge);
-                }
-            }
-            return -1;
+            return responseHeaders == null ? null : (String)responseHeaders.get(HttpConstants.CACHE_CONTROL);
         } catch (Exception e) {
             e.printStackTrace();
-            return -1;
+            return null;
         }
     }
 
+    /**
+     * get all directives of cache-control in reponse header, parsed once
+     * 
+     * @return {@link CacheControl#EMPTY} if no cache-control in response headers
+     */
+    public CacheControl getCacheControl() {
+        parseHeaders();
+        return cacheControl;
+    }
+
+    /**
+     * http cache-control in reponse header
+     * 
+     * @return -1 represents http error or no cache-control in response headers, or max-age in seconds
+     */
+    public int getCacheControlMaxAge() {
+        return getCacheControl().getMaxAge();
+    }
+
+    /**
+     * http stale-while-revalidate in cache-control of reponse header
+     * 
+     * @return -1 represents http error or no stale-while-revalidate in cache-control, or seconds response can be used
+     * after expired while revalidating in background
+     */
+    public int getCacheControlStaleWhileRevalidate() {
+        return getCacheControl().getStaleWhileRevalidate();
+    }
+
+    /**
+     * http stale-if-error in cache-control of reponse header
+     * 
+     * @return -1 represents http error or no stale-if-error in cache-control, or seconds response can be used after
+     * expired when revalidating fail
+     */
+    public int getCacheControlStaleIfError() {
+        return getCacheControl().getStaleIfError();
+    }
+
+    /**
+     * http expires in reponse header, parsed once
+     * 
+     * @return -1 represents no expires or invalid, or time in mills
+     */
+    public long getExpiresHeaderInMillis() {
+        parseHeaders();
+        return expiresHeaderTime;
+    }
+
+    /**
+     * http date in reponse header, time response generated by server, parsed once
+     * 
+     * @return -1 represents no date or invalid, or time in mills
+     */
+    public long getDateHeaderInMillis() {
+        parseHeaders();
+        return dateHeaderTime;
+    }
+
+    /**
+     * http age in reponse header, time response has been in proxy caches, parsed once
+     * 
+     * @return -1 represents no age or invalid, or seconds
+     */
+    public int getAgeHeader() {
+        parseHeaders();
+        return ageHeader;
+    }
+
     /**
      * get expires
      * 
      * @return <ul>
-     * <li>if max-age in cache-control is exists, return current time plus it</li>
-     * <li>else return expires</li>
+     * <li>if max-age in cache-control is exists, return current time plus it, minus age in header</li>
+     * <li>else if expires exists, return current time plus expires minus date in header, minus age in header, so
+     * difference of server and client clock does not matter. If no date in header, return expires</li>
      * <li>if something error, return -1</li>
      * </ul>
      */
     public long getExpiresInMillis() {
-        int maxAge = getCacheControlMaxAge();
-        if (maxAge != -1) {
-            return System.currentTimeMillis() + maxAge * 1000;
-        } else {
-            String expire = getExpiresHeader();
-            if (!StringUtils.isEmpty(expire)) {
-                return HttpUtils.parseGmtTime(getExpiresHeader());
+        parseHeaders();
+        long age = (ageHeader > 0 ? ageHeader * 1000L : 0);
+        if (cacheControl.getMaxAge() != -1) {
+            return System.currentTimeMillis() + cacheControl.getMaxAge() * 1000L - age;
+        } else if (expiresHeaderTime != -1) {
+            if (dateHeaderTime == -1) {
+                return expiresHeaderTime;
             }
+            return System.currentTimeMillis() + expiresHeaderTime - dateHeaderTime - age;
         }
         return -1;
     }
 
+    /**
+     * parse cache-control, expires, date and age in headers if not parsed or headers changed
+     */
+    private void parseHeaders() {
+        if (isHeaderParsed) {
+            return;
+        }
+
+        cacheControl = CacheControl.parse(getStringHeader(HttpConstants.CACHE_CONTROL));
+        String expires = getStringHeader(HttpConstants.EXPIRES);
+        expiresHeaderTime = (StringUtils.isEmpty(expires) ? -1 : HttpUtils.parseGmtTime(expires));
+        String date = getStringHeader(HttpConstants.DATE);
+        dateHeaderTime = (StringUtils.isEmpty(date) ? -1 : HttpUtils.parseGmtTime(date));
+        ageHeader = parseAge(getStringHeader(HttpConstants.AGE));
+        isHeaderParsed = true;
+    }
+
+    /**
+     * parse age in header
+     * 
+     * @param age
+     * @return -1 represents null or invalid
+     */
+    private static int parseAge(String age) {
+        if (StringUtils.isEmpty(age)) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(age.trim());
+            return seconds < 0 ? -1 : (int)Math.min(seconds, Integer.MAX_VALUE);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * set response header
      * 
@@ -183,9 +541,21 @@ public class HttpResponse {
     public void setResponseHeader(String field, String newValue) {
         if (responseHeaders != null) {
             responseHeaders.put(field, newValue);
+            isHeaderParsed = false;
         }
     }
 
+    /**
+     * get response header as string
+     * 
+     * @param field
+     * @return null represents not exist
+     */
+    private String getStringHeader(String field) {
+        Object value = getResponseHeader(field);
+        return value instanceof String ? (String)value : null;
+    }
+
     /**
      * get response header, not avaliable now
      * 
@@ -0,0 +1,230 @@
+package cn.trinea.android.common.entity;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.trinea.android.common.util.RandomUtils;
+
+/**
+ * <strong>MultipartBody</strong><br/>
+ * <br/>
+ * Body of multipart/form-data paras and files, files are read and written part by part when sent, not loaded into
+ * memory.<br/>
+ * <ul>
+ * <strong>Setting</strong>
+ * <li>{@link #addPart(String, String)} add text para</li>
+ * <li>{@link #addFilePart(String, File, String)} add file</li>
+ * <li>{@link #addBytesPart(String, String, byte[], String)} add bytes as file</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Length of body is computed from length of files, so files should not be modified before sent</li>
+ * <li>Name and file name are encoded in UTF-8, <code>"</code>, CR and LF in them are percent-encoded</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-26
+ */
+public class MultipartBody extends HttpBody {
+
+    /** content type of file part if not set **/
+    public static final String  DEFAULT_FILE_CONTENT_TYPE = "application/octet-stream";
+
+    private static final String CHARSET                   = "UTF-8";
+    private static final byte[] CRLF                      = { '\r', '\n' };
+    private static final byte[] DASH_DASH                 = { '-', '-' };
+    private static final int    BUFFER_SIZE               = 8 * 1024;
+
+    private final String        boundary;
+    private final byte[]        boundaryBytes;
+    private List<Part>          parts                     = new ArrayList<Part>();
+
+    public MultipartBody(){
+        this("----TrineaFormBoundary" + RandomUtils.getRandomNumbersAndLetters(16));
+    }
+
+    /**
+     * @param boundary boundary between parts, should not appear in content of parts
+     */
+    public MultipartBody(String boundary){
+        if (boundary == null || boundary.length() == 0) {
+            throw new IllegalArgumentException("The boundary can not be empty.");
+        }
+        this.boundary = boundary;
+        this.boundaryBytes = getBytes(boundary);
+    }
+
+    /**
+     * add text para
+     * 
+     * @param name
+     * @param value null will be written as empty
+     * @return this
+     */
+    public MultipartBody addPart(String name, String value) {
+        parts.add(new Part(getHeaders(name, null, null), getBytes(value == null ? "" : value), null));
+        return this;
+    }
+
+    /**
+     * add file, content is read when sent
+     * 
+     * @param name
+     * @param file
+     * @param contentType if null, {@link #DEFAULT_FILE_CONTENT_TYPE}
+     * @return this
+     */
+    public MultipartBody addFilePart(String name, File file, String contentType) {
+        if (file == null) {
+            throw new IllegalArgumentException("The file can not be null.");
+        }
+        parts.add(new Part(getHeaders(name, file.getName(), contentType), null, file));
+        return this;
+    }
+
+    /**
+     * add bytes as file
+     * 
+     * @param name
+     * @param fileName
+     * @param bytes not copied, so do not modify it
+     * @param contentType if null, {@link #DEFAULT_FILE_CONTENT_TYPE}
+     * @return this
+     */
+    public MultipartBody addBytesPart(String name, String fileName, byte[] bytes, String contentType) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("The bytes can not be null.");
+        }
+        parts.add(new Part(getHeaders(name, fileName == null ? "" : fileName, contentType), bytes, null));
+        return this;
+    }
+
+    public String getBoundary() {
+        return boundary;
+    }
+
+    @Override
+    public String getContentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    @Override
+    public long getContentLength() {
+        long length = 0;
+        for (Part part : parts) {
+            if (part.file != null && !part.file.isFile()) {
+                return -1;
+            }
+            length += DASH_DASH.length + boundaryBytes.length + CRLF.length + part.headers.length
+                      + (part.file == null ? part.bytes.length : part.file.length()) + CRLF.length;
+        }
+        return length + DASH_DASH.length + boundaryBytes.length + DASH_DASH.length + CRLF.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        for (Part part : parts) {
+            output.write(DASH_DASH);
+            output.write(boundaryBytes);
+            output.write(CRLF);
+            output.write(part.headers);
+            if (part.file == null) {
+                output.write(part.bytes);
+            } else {
+                writeFile(output, part.file);
+            }
+            output.write(CRLF);
+        }
+        output.write(DASH_DASH);
+        output.write(boundaryBytes);
+        output.write(DASH_DASH);
+        output.write(CRLF);
+    }
+
+    private static void writeFile(OutputStream output, File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int readCount;
+            while ((readCount = input.read(buffer)) != -1) {
+                output.write(buffer, 0, readCount);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * get headers of part, ends with empty line
+     * 
+     * @param name
+     * @param fileName null represents text part
+     * @param contentType
+     * @return
+     */
+    private static byte[] getHeaders(String name, String fileName, String contentType) {
+        if (name == null) {
+            throw new IllegalArgumentException("The name can not be null.");
+        }
+
+        StringBuilder headers = new StringBuilder("Content-Disposition: form-data; name=\"");
+        appendQuoted(headers, name).append('"');
+        if (fileName != null) {
+            appendQuoted(headers.append("; filename=\""), fileName).append('"');
+            headers.append("\r\nContent-Type: ").append(contentType == null ? DEFAULT_FILE_CONTENT_TYPE : contentType);
+        }
+        return getBytes(headers.append("\r\n\r\n").toString());
+    }
+
+    /**
+     * append value in quoted string, encode <code>"</code>, CR and LF like browsers
+     * 
+     * @param sb
+     * @param value
+     * @return
+     */
+    private static StringBuilder appendQuoted(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append("%22");
+            } else if (c == '\r') {
+                sb.append("%0D");
+            } else if (c == '\n') {
+                sb.append("%0A");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    private static byte[] getBytes(String s) {
+        try {
+            return s.getBytes(CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UnsupportedEncodingException occurred. ", e);
+        }
+    }
+
+    /**
+     * part of body, content is bytes or file
+     */
+    private static class Part {
+
+        final byte[] headers;
+        final byte[] bytes;
+        final File   file;
+
+        Part(byte[] headers, byte[] bytes, File file){
+            this.headers = headers;
+            this.bytes = bytes;
+            this.file = file;
+        }
+    }
+}
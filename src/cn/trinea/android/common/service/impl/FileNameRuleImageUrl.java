@@ -1,5 +1,7 @@
 package cn.trinea.android.common.service.impl;
 
+import java.io.File;
+
 import cn.trinea.android.common.service.FileNameRule;
 import cn.trinea.android.common.util.FileUtils;
 import cn.trinea.android.common.util.StringUtils;
@@ -10,20 +12,39 @@ import cn.trinea.android.common.util.StringUtils;
  * <li>use image url as file name, replace char with _ if not letter or number</li>
  * <li>use file suffix in url as target file suffix</li>
  * <li>use {@link #setFileExtension(String)} set file extension</li>
+ * <li>scan url with a char table into a reusable buffer of current thread, no regex and no temporary string</li>
  * </ul>
  * 
  * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2012-11-21
  */
 public class FileNameRuleImageUrl implements FileNameRule {
 
-    private static final long  serialVersionUID     = 1L;
+    private static final long                serialVersionUID     = 1L;
 
     /** default file name if image url is empty **/
-    public static final String DEFAULT_FILE_NAME    = "ImageSDCardCacheFile.jpg";
+    public static final String               DEFAULT_FILE_NAME    = "ImageSDCardCacheFile.jpg";
     /** max length of file name, not include suffix **/
-    public static final int    MAX_FILE_NAME_LENGTH = 127;
+    public static final int                  MAX_FILE_NAME_LENGTH = 127;
 
-    private String             fileExtension        = null;
+    private static final char                EXTENSION_SEPARATOR  = '.';
+    private static final int                 DEFAULT_BUFFER_SIZE  = 256;
+    /** whether char is matched by regex \\w, that is [a-zA-Z_0-9] **/
+    private static final boolean[]           WORD_CHARS           = new boolean[128];
+    /** reusable char buffer of each thread **/
+    private static final ThreadLocal<char[]> BUFFER_POOL          = new ThreadLocal<char[]>();
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            WORD_CHARS[c] = true;
+            WORD_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            WORD_CHARS[c] = true;
+        }
+        WORD_CHARS['_'] = true;
+    }
+
+    private String                           fileExtension        = null;
 
     @Override
     public String getFileName(String imageUrl) {
@@ -31,16 +52,62 @@ public class FileNameRuleImageUrl implements FileNameRule {
             return DEFAULT_FILE_NAME;
         }
 
-        String ext = (fileExtension == null ? FileUtils.getFileExtension(imageUrl) : fileExtension);
-        String fileName = (imageUrl.length() >= MAX_FILE_NAME_LENGTH
-            ? imageUrl.substring(imageUrl.length() - MAX_FILE_NAME_LENGTH, imageUrl.length()) : imageUrl).replaceAll("[\\W]",
-                                                                                                                     "_");
-        return StringUtils.isEmpty(ext) ? fileName
-            : (new StringBuilder().append(fileName).append(".").append(ext).toString());
+        int length = imageUrl.length();
+        int nameStart = (length >= MAX_FILE_NAME_LENGTH ? length - MAX_FILE_NAME_LENGTH : 0);
+        // same to FileUtils.getFileExtension(imageUrl), but not create sub string
+        int extStart = imageUrl.lastIndexOf(FileUtils.FILE_EXTENSION_SEPARATOR) + 1;
+        int extLength = (extStart > 0 && imageUrl.lastIndexOf(File.separator) < extStart - 1) ? length - extStart : 0;
+        if (fileExtension != null) {
+            extLength = fileExtension.length();
+        } else if (StringUtils.isBlank(imageUrl)) {
+            // FileUtils.getFileExtension returns blank path itself
+            extStart = 0;
+            extLength = length;
+        }
+
+        char[] buffer = obtainBuffer(length - nameStart + 1 + extLength);
+        int count = 0;
+        for (int i = nameStart; i < length; i++) {
+            char c = imageUrl.charAt(i);
+            if (c < WORD_CHARS.length && WORD_CHARS[c]) {
+                buffer[count++] = c;
+            } else {
+                buffer[count++] = '_';
+                // a surrogate pair is one character for regex, so replace it with only one _
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(imageUrl.charAt(i + 1))) {
+                    i++;
+                }
+            }
+        }
+        if (extLength > 0) {
+            buffer[count++] = EXTENSION_SEPARATOR;
+            if (fileExtension != null) {
+                fileExtension.getChars(0, extLength, buffer, count);
+            } else {
+                imageUrl.getChars(extStart, length, buffer, count);
+            }
+            count += extLength;
+        }
+        return new String(buffer, 0, count);
     }
 
     public FileNameRuleImageUrl setFileExtension(String fileExtension) {
         this.fileExtension = fileExtension;
         return this;
     }
+
+    /**
+     * get char buffer of current thread, the buffer will be reused next time
+     * 
+     * @param size min size of buffer
+     * @return
+     */
+    private static char[] obtainBuffer(int size) {
+        char[] buffer = BUFFER_POOL.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new char[size > DEFAULT_BUFFER_SIZE ? size : DEFAULT_BUFFER_SIZE];
+            BUFFER_POOL.set(buffer);
+        }
+        return buffer;
+    }
 }
@@ -0,0 +1,200 @@
+package cn.trinea.android.common.service.impl;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+
+import cn.trinea.android.common.service.FileNameRule;
+import cn.trinea.android.common.util.FileUtils;
+import cn.trinea.android.common.util.StringUtils;
+
+/**
+ * File name rule, used when saving images in {@link ImageSDCardCache}
+ * <ul>
+ * <li>use 128-bit murmur3 hash of image url as file name, so different urls will not get the same name</li>
+ * <li>put file into two level folders named by the first two bytes of hash, like <code>3f/a2/3fa2...</code>, so each
+ * folder contains only a few files even if cache is large</li>
+ * <li>use file suffix in url as target file suffix</li>
+ * <li>use {@link #setFileExtension(String)} set file extension</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-12
+ */
+public class FileNameRuleUrlHash implements FileNameRule {
+
+    private static final long   serialVersionUID  = 1L;
+
+    /** default file name if image url is empty **/
+    public static final String  DEFAULT_FILE_NAME = "ImageSDCardCacheFile.jpg";
+
+    private static final char[] HEX_DIGITS        = "0123456789abcdef".toCharArray();
+    private static final long   C1                = 0x87c37b91114253d5L;
+    private static final long   C2                = 0x4cf5ad432745937fL;
+
+    private String              fileExtension     = null;
+
+    @Override
+    public String getFileName(String imageUrl) {
+        if (StringUtils.isEmpty(imageUrl)) {
+            return DEFAULT_FILE_NAME;
+        }
+
+        byte[] hash = murmur3Hash128(getBytes(imageUrl));
+        String ext = (fileExtension == null ? FileUtils.getFileExtension(imageUrl) : fileExtension);
+        boolean hasExt = !StringUtils.isEmpty(ext);
+        StringBuilder fileName = new StringBuilder(38 + (hasExt ? ext.length() + 1 : 0));
+        appendHex(fileName, hash, 0, 1).append(File.separatorChar);
+        appendHex(fileName, hash, 1, 2).append(File.separatorChar);
+        appendHex(fileName, hash, 0, hash.length);
+        if (hasExt) {
+            fileName.append(FileUtils.FILE_EXTENSION_SEPARATOR).append(ext);
+        }
+        return fileName.toString();
+    }
+
+    public FileNameRuleUrlHash setFileExtension(String fileExtension) {
+        this.fileExtension = fileExtension;
+        return this;
+    }
+
+    /**
+     * get utf-8 bytes of str
+     * 
+     * @param str
+     * @return
+     */
+    private static byte[] getBytes(String str) {
+        try {
+            return str.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UnsupportedEncodingException occurred. ", e);
+        }
+    }
+
+    /**
+     * append bytes in [start, end) of data as hex to sb
+     * 
+     * @param sb
+     * @param data
+     * @param start
+     * @param end
+     * @return
+     */
+    private static StringBuilder appendHex(StringBuilder sb, byte[] data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            sb.append(HEX_DIGITS[(data[i] >> 4) & 0x0f]).append(HEX_DIGITS[data[i] & 0x0f]);
+        }
+        return sb;
+    }
+
+    /**
+     * MurmurHash3 x64 128-bit variant, seed is 0
+     * 
+     * @param data
+     * @return 16 bytes hash, big endian
+     */
+    static byte[] murmur3Hash128(byte[] data) {
+        int length = data.length;
+        int blockCount = length >> 4;
+        long h1 = 0, h2 = 0;
+
+        for (int i = 0; i < blockCount; i++) {
+            long k1 = getLongLittleEndian(data, i << 4);
+            long k2 = getLongLittleEndian(data, (i << 4) + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = blockCount << 4;
+        long k1 = 0, k2 = 0;
+        switch (length & 15) {
+            case 15:
+                k2 ^= ((long)data[tail + 14] & 0xff) << 48;
+            case 14:
+                k2 ^= ((long)data[tail + 13] & 0xff) << 40;
+            case 13:
+                k2 ^= ((long)data[tail + 12] & 0xff) << 32;
+            case 12:
+                k2 ^= ((long)data[tail + 11] & 0xff) << 24;
+            case 11:
+                k2 ^= ((long)data[tail + 10] & 0xff) << 16;
+            case 10:
+                k2 ^= ((long)data[tail + 9] & 0xff) << 8;
+            case 9:
+                k2 ^= ((long)data[tail + 8] & 0xff);
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= ((long)data[tail + 7] & 0xff) << 56;
+            case 7:
+                k1 ^= ((long)data[tail + 6] & 0xff) << 48;
+            case 6:
+                k1 ^= ((long)data[tail + 5] & 0xff) << 40;
+            case 5:
+                k1 ^= ((long)data[tail + 4] & 0xff) << 32;
+            case 4:
+                k1 ^= ((long)data[tail + 3] & 0xff) << 24;
+            case 3:
+                k1 ^= ((long)data[tail + 2] & 0xff) << 16;
+            case 2:
+                k1 ^= ((long)data[tail + 1] & 0xff) << 8;
+            case 1:
+                k1 ^= ((long)data[tail] & 0xff);
+                h1 ^= mixK1(k1);
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] hash = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            hash[i] = (byte)(h1 >>> (56 - (i << 3)));
+            hash[i + 8] = (byte)(h2 >>> (56 - (i << 3)));
+        }
+        return hash;
+    }
+
+    private static long getLongLittleEndian(byte[] data, int offset) {
+        return ((long)data[offset] & 0xff) | (((long)data[offset + 1] & 0xff) << 8)
+               | (((long)data[offset + 2] & 0xff) << 16) | (((long)data[offset + 3] & 0xff) << 24)
+               | (((long)data[offset + 4] & 0xff) << 32) | (((long)data[offset + 5] & 0xff) << 40)
+               | (((long)data[offset + 6] & 0xff) << 48) | (((long)data[offset + 7] & 0xff) << 56);
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
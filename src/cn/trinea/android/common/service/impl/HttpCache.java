@@ -0,0 +1,531 @@
+package cn.trinea.android.common.service.impl;
+
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import android.content.Context;
+import cn.trinea.android.common.constant.HttpConstants;
+import cn.trinea.android.common.dao.HttpCacheDao;
+import cn.trinea.android.common.dao.impl.HttpCacheDaoImpl;
+import cn.trinea.android.common.entity.CacheControl;
+import cn.trinea.android.common.entity.CacheObject;
+import cn.trinea.android.common.entity.HttpRequest;
+import cn.trinea.android.common.entity.HttpResponse;
+import cn.trinea.android.common.util.HttpUtils;
+import cn.trinea.android.common.util.SqliteUtils;
+import cn.trinea.android.common.util.StringUtils;
+import cn.trinea.android.common.util.SystemUtils;
+
+/**
+ * <strong>Http Cache</strong><br/>
+ * <br/>
+ * Cache http get responses in memory and db, fresh responses are returned without network.<br/>
+ * <ul>
+ * <strong>Setting and Usage</strong>
+ * <li>Use one of constructors below to init cache</li>
+ * <li>{@link #httpGet(HttpRequest)}, {@link #httpGet(String)} or {@link #httpGetString(String)} get response from
+ * cache if it's not expired, else get it from network and cache it</li>
+ * <li>{@link #initData(int)} load responses not expired of a type from db into memory when app start</li>
+ * <li>{@link #setType(int)} set type of responses saved to db, default is 0</li>
+ * <li>{@link #setStaleWhileRevalidateTime(long)} set time expired response can be returned while refreshing in
+ * background, default is 0</li>
+ * <li>{@link #setStaleIfErrorTime(long)} set time expired response can be returned when getting from network fail,
+ * default is 0</li>
+ * <li>{@link #get(String)} get response from cache only</li>
+ * <li>{@link #deleteExpired()} and {@link #clear()} delete responses in cache</li>
+ * </ul>
+ * <ul>
+ * <strong>Constructor</strong>
+ * <li>{@link #HttpCache(Context)}</li>
+ * <li>{@link #HttpCache(Context, int)}</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Only successful responses with max-age in Cache-Control or Expires header, or with ETag or Last-Modified
+ * header are cached, and responses with no-store in Cache-Control are not</li>
+ * <li>Expired time is computed when got from network, see {@link HttpResponse#getExpiresInMillis()}</li>
+ * <li>Expired responses with ETag or Last-Modified are kept to revalidate by conditional request, until
+ * {@link #deleteExpired()}</li>
+ * <li>Responses got from cache are shared by all callers, treat them as read-only. Cache never changes a response
+ * after it's cached, a refreshed copy replaces it instead. Response got from network is not shared, a copy of it is
+ * cached</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-15
+ */
+public class HttpCache {
+
+    /** default max size of memory cache **/
+    public static final int                    DEFAULT_MAX_SIZE  = 64;
+
+    private static final String                IF_NONE_MATCH     = "If-None-Match";
+    private static final String                IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /** memory cache, key is url **/
+    private SimpleCache<String, HttpResponse>  cache;
+    private HttpCacheDao                       httpCacheDao;
+    /** type of responses saved to db **/
+    private int                                type              = 0;
+    /** default stale-while-revalidate time in mills, 0 means not open **/
+    private long                               staleWhileRevalidateTime;
+    /** default stale-if-error time in mills, 0 means not open **/
+    private long                               staleIfErrorTime;
+
+    /** urls refreshing in background **/
+    private ConcurrentHashMap<String, Boolean> refreshingUrlMap  = new ConcurrentHashMap<String, Boolean>();
+    /** thread pool to refresh responses in background **/
+    private ExecutorService                    threadPool        = Executors.newFixedThreadPool(SystemUtils.DEFAULT_THREAD_POOL_SIZE);
+
+    /**
+     * max size of memory cache is {@link #DEFAULT_MAX_SIZE}
+     * 
+     * @param context
+     */
+    public HttpCache(Context context){
+        this(context, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param context
+     * @param maxSize max size of memory cache
+     */
+    public HttpCache(Context context, int maxSize){
+        if (context == null) {
+            throw new IllegalArgumentException("The context can not be null.");
+        }
+        cache = new SimpleCache<String, HttpResponse>(maxSize);
+        cache.setCacheFullRemoveType(new RemoveTypeLastUsedTimeFirst<HttpResponse>());
+        httpCacheDao = new HttpCacheDaoImpl(SqliteUtils.getInstance(context));
+    }
+
+    /**
+     * load responses not expired whose type is same to type from db into memory cache
+     * 
+     * @param type
+     * @return count of responses loaded
+     */
+    public int initData(int type) {
+        Map<String, HttpResponse> httpResponseMap = httpCacheDao.getHttpResponsesByType(type);
+        if (httpResponseMap == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (Map.Entry<String, HttpResponse> entry : httpResponseMap.entrySet()) {
+            if (cache.getSize() >= cache.getMaxSize()) {
+                break;
+            }
+            if (!cache.containsKey(entry.getKey())) {
+                entry.getValue().setInCache(true);
+                cache.put(entry.getKey(), entry.getValue());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * get response from cache first, if not exist or expired, get it from network and cache it
+     * <ul>
+     * <li>If expired response in cache has ETag or Last-Modified, If-None-Match or If-Modified-Since will be sent, and
+     * if server returns 304, the cached response will be refreshed and returned without downloading body again</li>
+     * <li>If expired response is still in stale-while-revalidate time, it will be returned immediately and refreshed in
+     * background, refreshing of the same url will be run only once at the same time</li>
+     * <li>If expired response is still in stale-if-error time, it will be returned when getting from network fail</li>
+     * </ul>
+     * 
+     * @param request
+     * @return the response of the url, if null represents http error
+     * @see HttpUtils#httpGet(HttpRequest)
+     */
+    public HttpResponse httpGet(HttpRequest request) {
+        if (request == null) {
+            return null;
+        }
+
+        String url = request.getUrl();
+        HttpResponse cachedResponse = getFromCache(url);
+        if (cachedResponse != null) {
+            if (!cachedResponse.isExpired()) {
+                return cachedResponse;
+            }
+            if (isInStaleTime(cachedResponse, getStaleWhileRevalidateTime(cachedResponse))) {
+                refreshInBackground(request);
+                return cachedResponse;
+            }
+        }
+
+        HttpResponse response = getFromNetwork(request, cachedResponse);
+        if ((response == null || response.getResponseCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR)
+            && cachedResponse != null && isInStaleTime(cachedResponse, getStaleIfErrorTime(cachedResponse))) {
+            return cachedResponse;
+        }
+        return response;
+    }
+
+    /**
+     * get response from network, revalidate cached response if it has ETag or Last-Modified, and cache the response
+     * 
+     * @param request
+     * @param cachedResponse expired response in cache, may be null
+     * @return
+     */
+    private HttpResponse getFromNetwork(HttpRequest request, HttpResponse cachedResponse) {
+        boolean isConditional = setConditionalHeaders(request, cachedResponse);
+        HttpResponse response;
+        try {
+            response = HttpUtils.httpGet(request);
+        } finally {
+            if (isConditional) {
+                request.getRequestPropertys().remove(IF_NONE_MATCH);
+                request.getRequestPropertys().remove(IF_MODIFIED_SINCE);
+            }
+        }
+
+        if (isConditional && response != null && response.isNotModified()) {
+            return refresh(cachedResponse, response);
+        }
+        if (isCacheable(response)) {
+            put(response);
+        }
+        return response;
+    }
+
+    /**
+     * refresh response of the request in background, if the url is refreshing, do nothing
+     * 
+     * @param request
+     */
+    private void refreshInBackground(HttpRequest request) {
+        final String url = request.getUrl();
+        if (refreshingUrlMap.putIfAbsent(url, Boolean.TRUE) != null) {
+            return;
+        }
+
+        final HttpRequest backgroundRequest = new HttpRequest(request);
+        try {
+            threadPool.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        getFromNetwork(backgroundRequest, getFromCache(url));
+                    } finally {
+                        refreshingUrlMap.remove(url);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingUrlMap.remove(url);
+        }
+    }
+
+    /**
+     * @param httpUrl
+     * @return the response of the url, if null represents http error
+     * @see #httpGet(HttpRequest)
+     */
+    public HttpResponse httpGet(String httpUrl) {
+        return httpGet(new HttpRequest(httpUrl));
+    }
+
+    /**
+     * @param httpUrl
+     * @return the content of the url, if null represents http error
+     * @see #httpGet(HttpRequest)
+     */
+    public String httpGetString(String httpUrl) {
+        HttpResponse response = httpGet(new HttpRequest(httpUrl));
+        return response == null ? null : response.getResponseBody();
+    }
+
+    /**
+     * get response not expired from memory cache, if not exist, get from db
+     * 
+     * @param url
+     * @return null represents not in cache or expired
+     */
+    public HttpResponse get(String url) {
+        HttpResponse response = getFromCache(url);
+        return (response == null || response.isExpired()) ? null : response;
+    }
+
+    /**
+     * get response from memory cache, if not exist, get from db
+     * 
+     * @param url
+     * @return null represents not in cache, may be expired
+     */
+    private HttpResponse getFromCache(String url) {
+        if (StringUtils.isEmpty(url)) {
+            return null;
+        }
+
+        CacheObject<HttpResponse> cacheObject = cache.get(url);
+        HttpResponse response = (cacheObject == null ? null : cacheObject.getData());
+        if (response == null) {
+            response = httpCacheDao.getHttpResponse(url);
+            if (response == null) {
+                return null;
+            }
+            response.setInCache(true);
+            cache.put(url, response);
+        }
+        return response;
+    }
+
+    /**
+     * whether response of the url is in cache and not expired
+     * 
+     * @param url
+     * @return
+     */
+    public boolean containsKey(String url) {
+        return get(url) != null;
+    }
+
+    /**
+     * delete expired responses in memory and db
+     * 
+     * @return count of rows deleted in db
+     */
+    public int deleteExpired() {
+        for (Map.Entry<String, CacheObject<HttpResponse>> entry : cache.entrySet()) {
+            CacheObject<HttpResponse> cacheObject = entry.getValue();
+            if (cacheObject == null || cacheObject.getData() == null || cacheObject.getData().isExpired()) {
+                cache.remove(entry.getKey());
+            }
+        }
+        return httpCacheDao.deleteExpiredHttpResponse();
+    }
+
+    /**
+     * delete the response of the url in memory and db
+     * 
+     * @param url
+     */
+    public void remove(String url) {
+        if (!StringUtils.isEmpty(url)) {
+            cache.remove(url);
+            httpCacheDao.deleteHttpResponse(url);
+        }
+    }
+
+    /**
+     * delete all responses in memory and db
+     */
+    public void clear() {
+        cache.clear();
+        httpCacheDao.deleteAllHttpResponse();
+    }
+
+    /**
+     * get hit rate of memory cache
+     * 
+     * @return
+     */
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    /**
+     * get default stale-while-revalidate time in mills
+     * 
+     * @return
+     */
+    public long getStaleWhileRevalidateTime() {
+        return staleWhileRevalidateTime;
+    }
+
+    /**
+     * set default stale-while-revalidate time in mills, used when no stale-while-revalidate in Cache-Control of
+     * response. Expired response will be returned immediately and refreshed in background in this time after expired.
+     * Default is 0, means not open
+     * 
+     * @param staleWhileRevalidateTime
+     */
+    public void setStaleWhileRevalidateTime(long staleWhileRevalidateTime) {
+        this.staleWhileRevalidateTime = staleWhileRevalidateTime;
+    }
+
+    /**
+     * get default stale-if-error time in mills
+     * 
+     * @return
+     */
+    public long getStaleIfErrorTime() {
+        return staleIfErrorTime;
+    }
+
+    /**
+     * set default stale-if-error time in mills, used when no stale-if-error in Cache-Control of response. Expired
+     * response will be returned when getting from network fail in this time after expired. Default is 0, means not
+     * open
+     * 
+     * @param staleIfErrorTime
+     */
+    public void setStaleIfErrorTime(long staleIfErrorTime) {
+        this.staleIfErrorTime = staleIfErrorTime;
+    }
+
+    /**
+     * @see ExecutorService#shutdown()
+     */
+    public void shutdown() {
+        threadPool.shutdown();
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * set type of responses saved to db, default is 0
+     * 
+     * @param type
+     */
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    /**
+     * put copy of response into memory and db, response itself is not changed and can be returned to caller
+     * 
+     * @param response
+     */
+    private void put(HttpResponse response) {
+        HttpResponse cachedResponse = new HttpResponse(response);
+        cachedResponse.setType(type);
+        cachedResponse.setInCache(true);
+        if (cachedResponse.getCacheControl().isNoCache()) {
+            // treated as expired and revalidated every time
+            cachedResponse.setExpiredTime(-1);
+        }
+        cache.put(cachedResponse.getUrl(), cachedResponse);
+        httpCacheDao.insertHttpResponse(cachedResponse);
+    }
+
+    /**
+     * get stale-while-revalidate time of response in mills, use the one in Cache-Control if exist, 0 if
+     * must-revalidate in Cache-Control
+     * 
+     * @param response
+     * @return
+     */
+    private long getStaleWhileRevalidateTime(HttpResponse response) {
+        CacheControl cacheControl = response.getCacheControl();
+        if (cacheControl.isMustRevalidate()) {
+            return 0;
+        }
+        int seconds = cacheControl.getStaleWhileRevalidate();
+        return seconds >= 0 ? seconds * 1000L : staleWhileRevalidateTime;
+    }
+
+    /**
+     * get stale-if-error time of response in mills, use the one in Cache-Control if exist, 0 if must-revalidate in
+     * Cache-Control
+     * 
+     * @param response
+     * @return
+     */
+    private long getStaleIfErrorTime(HttpResponse response) {
+        CacheControl cacheControl = response.getCacheControl();
+        if (cacheControl.isMustRevalidate()) {
+            return 0;
+        }
+        int seconds = cacheControl.getStaleIfError();
+        return seconds >= 0 ? seconds * 1000L : staleIfErrorTime;
+    }
+
+    /**
+     * whether response expired less than staleTime ago and has body
+     * 
+     * @param response
+     * @param staleTime
+     * @return
+     */
+    private static boolean isInStaleTime(HttpResponse response, long staleTime) {
+        return staleTime > 0 && response.getResponseBody() != null && response.getExpiredTime() > 0
+               && System.currentTimeMillis() <= response.getExpiredTime() + staleTime;
+    }
+
+    /**
+     * set If-None-Match and If-Modified-Since to request according to cached response, if they are not set already
+     * 
+     * @param request
+     * @param cachedResponse
+     * @return whether request becomes a conditional request
+     */
+    private static boolean setConditionalHeaders(HttpRequest request, HttpResponse cachedResponse) {
+        if (cachedResponse == null || cachedResponse.getResponseBody() == null
+            || request.getRequestProperty(IF_NONE_MATCH) != null
+            || request.getRequestProperty(IF_MODIFIED_SINCE) != null) {
+            return false;
+        }
+
+        String eTag = cachedResponse.getETag(), lastModified = cachedResponse.getLastModified();
+        if (!StringUtils.isEmpty(eTag)) {
+            request.setRequestProperty(IF_NONE_MATCH, eTag);
+        }
+        if (!StringUtils.isEmpty(lastModified)) {
+            request.setRequestProperty(IF_MODIFIED_SINCE, lastModified);
+        }
+        return !StringUtils.isEmpty(eTag) || !StringUtils.isEmpty(lastModified);
+    }
+
+    /**
+     * refresh cached response by 304 response, update expired time and validators of a copy, then put the copy into
+     * memory and db. Cached response is not changed, it may be read by other threads
+     * 
+     * @param cachedResponse
+     * @param notModifiedResponse
+     * @return the refreshed copy
+     */
+    private HttpResponse refresh(HttpResponse cachedResponse, HttpResponse notModifiedResponse) {
+        HttpResponse refreshedResponse = new HttpResponse(cachedResponse);
+        long expiredTime = notModifiedResponse.getExpiredTime();
+        if (expiredTime > System.currentTimeMillis()) {
+            refreshedResponse.setExpiredTime(expiredTime);
+        }
+        if (!StringUtils.isEmpty(notModifiedResponse.getETag())) {
+            refreshedResponse.setResponseHeader(HttpConstants.ETAG, notModifiedResponse.getETag());
+        }
+        if (!StringUtils.isEmpty(notModifiedResponse.getLastModified())) {
+            refreshedResponse.setResponseHeader(HttpConstants.LAST_MODIFIED, notModifiedResponse.getLastModified());
+        }
+        refreshedResponse.setResponseCode(HttpURLConnection.HTTP_OK);
+        refreshedResponse.setInCache(true);
+        cache.put(refreshedResponse.getUrl(), refreshedResponse);
+        httpCacheDao.insertHttpResponse(refreshedResponse);
+        return refreshedResponse;
+    }
+
+    /**
+     * whether response can be cached
+     * <ul>
+     * <li>response code should be 200, and no no-store in Cache-Control</li>
+     * <li>not expired, or has ETag or Last-Modified to revalidate</li>
+     * <li>if no-cache in Cache-Control, it will be treated as expired and revalidated every time</li>
+     * </ul>
+     * 
+     * @param response
+     * @return
+     */
+    private static boolean isCacheable(HttpResponse response) {
+        if (response == null || response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            return false;
+        }
+
+        CacheControl cacheControl = response.getCacheControl();
+        if (cacheControl.isNoStore()) {
+            return false;
+        }
+        return (!cacheControl.isNoCache() && !response.isExpired()) || !StringUtils.isEmpty(response.getETag())
+               || !StringUtils.isEmpty(response.getLastModified());
+    }
+}
@@ -0,0 +1,405 @@
+package cn.trinea.android.common.service.impl;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.trinea.android.common.entity.HttpRequest;
+import cn.trinea.android.common.entity.HttpResponse;
+import cn.trinea.android.common.util.HttpUtils;
+import cn.trinea.android.common.util.ObjectUtils;
+import cn.trinea.android.common.util.SystemUtils;
+
+/**
+ * <strong>Http Dispatcher</strong><br/>
+ * <br/>
+ * Execute http requests asynchronously in a bounded thread pool.<br/>
+ * <ul>
+ * <strong>Setting and Usage</strong>
+ * <li>Use one of constructors below to init dispatcher</li>
+ * <li>{@link #httpGet(HttpRequest, OnHttpListener)} and {@link #httpPost(HttpRequest, OnHttpListener)} execute
+ * request asynchronously, return {@link HttpCall} to wait for response or cancel</li>
+ * <li>{@link HttpRequest#setPriority(int)} set priority of request, requests waiting are executed from the biggest
+ * priority, those of the same priority are executed in order. Priority is read when request is enqueued, changing it
+ * later has no effect</li>
+ * <li>{@link #cancelAll(Object)} cancel all requests whose tag is same, see {@link HttpRequest#setTag(Object)}</li>
+ * <li>{@link #shutdown()} shutdown thread pool</li>
+ * </ul>
+ * <ul>
+ * <strong>Constructor</strong>
+ * <li>{@link #HttpDispatcher()}</li>
+ * <li>{@link #HttpDispatcher(int, int)}</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>At most {@link #getMaxRequests()} requests run at the same time, and at most {@link #getMaxRequestsPerHost()}
+ * of them are to the same host, others wait</li>
+ * <li>Canceled request waiting will not be executed, canceled request running will go on, but its response is
+ * dropped and listener is not called</li>
+ * <li>{@link OnHttpListener} is called in thread of thread pool, not ui thread</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-22
+ */
+public class HttpDispatcher {
+
+    /** default max count of requests running at the same time **/
+    public static final int            DEFAULT_MAX_REQUESTS          = SystemUtils.DEFAULT_THREAD_POOL_SIZE * 2;
+    /** default max count of requests to the same host running at the same time **/
+    public static final int            DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+
+    private final int                  maxRequests;
+    private final int                  maxRequestsPerHost;
+    private final ExecutorService      threadPool;
+
+    /** requests waiting, ordered by priority and sequence **/
+    private final TreeSet<HttpCall>    readyCalls;
+    /** key is host, value is count of requests to this host running **/
+    private final Map<String, Integer> runningCountMap               = new HashMap<String, Integer>();
+    private final List<HttpCall>       runningCalls                  = new ArrayList<HttpCall>();
+    private final AtomicLong           sequence                      = new AtomicLong(0);
+
+    /**
+     * max requests is {@link #DEFAULT_MAX_REQUESTS}, max requests per host is {@link #DEFAULT_MAX_REQUESTS_PER_HOST}
+     */
+    public HttpDispatcher(){
+        this(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * @param maxRequests max count of requests running at the same time
+     * @param maxRequestsPerHost max count of requests to the same host running at the same time
+     */
+    public HttpDispatcher(int maxRequests, int maxRequestsPerHost){
+        if (maxRequests <= 0 || maxRequestsPerHost <= 0) {
+            throw new IllegalArgumentException("The maxRequests and maxRequestsPerHost must be greater than 0.");
+        }
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.threadPool = Executors.newFixedThreadPool(maxRequests);
+        this.readyCalls = new TreeSet<HttpCall>(new Comparator<HttpCall>() {
+
+            @Override
+            public int compare(HttpCall lhs, HttpCall rhs) {
+                int lp = lhs.priority, rp = rhs.priority;
+                if (lp != rp) {
+                    return lp > rp ? -1 : 1;
+                }
+                return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * http get asynchronously
+     * 
+     * @param request
+     * @param listener called after response got, can be null
+     * @return call to wait for response or cancel
+     * @see HttpUtils#httpGet(HttpRequest)
+     */
+    public HttpCall httpGet(HttpRequest request, OnHttpListener listener) {
+        return enqueue(new HttpCall(request, false, listener));
+    }
+
+    /**
+     * http post asynchronously
+     * 
+     * @param request
+     * @param listener called after response got, can be null
+     * @return call to wait for response or cancel
+     * @see HttpUtils#httpPost(HttpRequest)
+     */
+    public HttpCall httpPost(HttpRequest request, OnHttpListener listener) {
+        return enqueue(new HttpCall(request, true, listener));
+    }
+
+    /**
+     * cancel all requests waiting or running whose tag is same to tag
+     * 
+     * @param tag
+     * @return count of requests canceled
+     */
+    public int cancelAll(Object tag) {
+        List<HttpCall> calls = new ArrayList<HttpCall>();
+        synchronized (this) {
+            for (HttpCall call : readyCalls) {
+                if (ObjectUtils.isEquals(tag, call.request.getTag())) {
+                    calls.add(call);
+                }
+            }
+            for (HttpCall call : runningCalls) {
+                if (ObjectUtils.isEquals(tag, call.request.getTag())) {
+                    calls.add(call);
+                }
+            }
+        }
+
+        int count = 0;
+        for (HttpCall call : calls) {
+            if (call.cancel()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * get count of requests waiting
+     * 
+     * @return
+     */
+    public synchronized int getReadyCount() {
+        return readyCalls.size();
+    }
+
+    /**
+     * get count of requests running
+     * 
+     * @return
+     */
+    public synchronized int getRunningCount() {
+        return runningCalls.size();
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * shutdown thread pool, requests running go on, requests waiting or enqueued later will not be executed, their
+     * {@link HttpCall#get()} returns null and listener is not called
+     * 
+     * @see ExecutorService#shutdown()
+     */
+    public void shutdown() {
+        threadPool.shutdown();
+    }
+
+    private HttpCall enqueue(HttpCall call) {
+        synchronized (this) {
+            readyCalls.add(call);
+        }
+        promoteCalls();
+        return call;
+    }
+
+    /**
+     * run requests waiting if running requests are not too many
+     */
+    private synchronized void promoteCalls() {
+        Iterator<HttpCall> iterator = readyCalls.iterator();
+        while (runningCalls.size() < maxRequests && iterator.hasNext()) {
+            HttpCall call = iterator.next();
+            Integer hostCount = runningCountMap.get(call.host);
+            if (hostCount != null && hostCount >= maxRequestsPerHost) {
+                continue;
+            }
+
+            iterator.remove();
+            runningCountMap.put(call.host, hostCount == null ? 1 : hostCount + 1);
+            runningCalls.add(call);
+            try {
+                threadPool.execute(call);
+            } catch (RejectedExecutionException e) {
+                // thread pool is shutdown, the call will never run
+                removeRunningCall(call);
+                call.doneLatch.countDown();
+            }
+        }
+    }
+
+    /**
+     * remove call from running or waiting requests
+     * 
+     * @param call
+     */
+    private void finished(HttpCall call) {
+        synchronized (this) {
+            if (!removeRunningCall(call)) {
+                readyCalls.remove(call);
+            }
+        }
+        promoteCalls();
+    }
+
+    /**
+     * remove call from running requests, and decrease count of requests to its host
+     * 
+     * @param call
+     * @return whether call is running
+     */
+    private synchronized boolean removeRunningCall(HttpCall call) {
+        if (!runningCalls.remove(call)) {
+            return false;
+        }
+
+        Integer hostCount = runningCountMap.get(call.host);
+        if (hostCount == null || hostCount <= 1) {
+            runningCountMap.remove(call.host);
+        } else {
+            runningCountMap.put(call.host, hostCount - 1);
+        }
+        return true;
+    }
+
+    /**
+     * get host of url
+     * 
+     * @param url
+     * @return empty string if url is invalid
+     */
+    private static String getHost(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host == null ? "" : host;
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    /**
+     * a request executed asynchronously, can be used to wait for response or cancel
+     * 
+     * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-22
+     */
+    public class HttpCall implements Runnable {
+
+        private final HttpRequest     request;
+        private final boolean         isPost;
+        private final OnHttpListener  listener;
+        /** priority of request when enqueued, request may be changed later but order of ready calls must not **/
+        private final int             priority;
+        private final long            sequence;
+        private final String          host;
+        private final CountDownLatch  doneLatch  = new CountDownLatch(1);
+
+        private volatile boolean      isCanceled = false;
+        private volatile HttpResponse response;
+
+        private HttpCall(HttpRequest request, boolean isPost, OnHttpListener listener){
+            if (request == null) {
+                throw new IllegalArgumentException("The request can not be null.");
+            }
+            this.request = request;
+            this.isPost = isPost;
+            this.listener = listener;
+            this.priority = request.getPriority();
+            this.sequence = HttpDispatcher.this.sequence.getAndIncrement();
+            this.host = getHost(request.getUrl());
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (isCanceled) {
+                    return;
+                }
+
+                HttpResponse result = isPost ? HttpUtils.httpPost(request) : HttpUtils.httpGet(request);
+                response = result;
+                if (!isCanceled && listener != null) {
+                    listener.onResponse(request, result);
+                }
+            } finally {
+                doneLatch.countDown();
+                finished(this);
+            }
+        }
+
+        /**
+         * cancel request, if it's waiting, it will not be executed, if it's running, its response is dropped and
+         * listener will not be called
+         * 
+         * @return false if it's finished or canceled already
+         */
+        public boolean cancel() {
+            if (isCanceled || isDone()) {
+                return false;
+            }
+
+            isCanceled = true;
+            boolean isWaiting;
+            synchronized (HttpDispatcher.this) {
+                isWaiting = readyCalls.remove(this);
+            }
+            if (isWaiting) {
+                doneLatch.countDown();
+            }
+            return true;
+        }
+
+        public boolean isCanceled() {
+            return isCanceled;
+        }
+
+        /**
+         * whether finished or canceled before running
+         * 
+         * @return
+         */
+        public boolean isDone() {
+            return doneLatch.getCount() == 0;
+        }
+
+        /**
+         * wait until finished and get response
+         * 
+         * @return null represents http error or canceled
+         * @throws InterruptedException
+         */
+        public HttpResponse get() throws InterruptedException {
+            doneLatch.await();
+            return isCanceled ? null : response;
+        }
+
+        /**
+         * wait until finished or timeout and get response
+         * 
+         * @param timeout
+         * @param unit
+         * @return null represents http error, canceled or timeout
+         * @throws InterruptedException
+         */
+        public HttpResponse get(long timeout, TimeUnit unit) throws InterruptedException {
+            return (doneLatch.await(timeout, unit) && !isCanceled) ? response : null;
+        }
+
+        public HttpRequest getRequest() {
+            return request;
+        }
+    }
+
+    /**
+     * callback interface after response got
+     * 
+     * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-22
+     */
+    public interface OnHttpListener {
+
+        /**
+         * callback function after response got, not called if request canceled. run in thread of thread pool, not
+         * ui thread
+         * 
+         * @param request
+         * @param response null represents http error
+         */
+        public void onResponse(HttpRequest request, HttpResponse response);
+    }
+}
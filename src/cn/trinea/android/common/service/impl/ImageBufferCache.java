@@ -0,0 +1,542 @@
+package cn.trinea.android.common.service.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.trinea.android.common.util.IntArrayList;
+
+/**
+ * <strong>Image Buffer Cache</strong><br/>
+ * <br/>
+ * Cache of encoded image bytes in direct {@link ByteBuffer}. It can be the middle tier of {@link ImageCache}, image
+ * evicted from memory can be decoded again from here without reading sdcard.<br/>
+ * <br/>
+ * Direct buffers are allocated in slabs of {@link #SLAB_SIZE} lazily, each slab is divided into blocks of
+ * {@link #BLOCK_SIZE}. An image takes some blocks which need not be contiguous, so there is no fragmentation, and
+ * blocks of removed image are reused by next one. When the total size of blocks is larger than {@link #getMaxBytes()},
+ * least recently used images are removed.<br/>
+ * <ul>
+ * <strong>Usage</strong>
+ * <li>{@link #put(String, byte[])} put image bytes, {@link #put(String, File)} put image file without reading it
+ * into java heap</li>
+ * <li>{@link #getStream(String)} get stream of image to decode without copy, {@link #get(String)} get copy of image
+ * bytes</li>
+ * <li>{@link #remove(String)} and {@link #clear()}</li>
+ * </ul>
+ * <ul>
+ * <strong>About hit and miss of the cache</strong>
+ * <li>{@link #getHitRate()} get hit rate of the cache</li>
+ * <li>{@link #getHitCount()} get hit count of the cache</li>
+ * <li>{@link #getMissCount()} get miss count of the cache</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>All operations are synchronized, except that {@link #put(String, File)} reads file out of lock</li>
+ * <li>Memory of this cache is not free on Android. Since 4.x direct buffer is a non-movable byte array on java heap,
+ * and on 2.x it's an external allocation counted against heap limit of app. So it takes heap like other caches, up to
+ * {@link #getMaxBytes()}, and set its size according to memory class of device</li>
+ * <li>Slabs are not released until {@link #clear()}, their memory is freed when they are garbage collected</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-12-02
+ */
+public class ImageBufferCache {
+
+    /** default maximum bytes of the cache, 8M **/
+    public static final int                    DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    /** size of a block, 8K **/
+    public static final int                    BLOCK_SIZE        = 8 * 1024;
+    /** size of a slab, 1M **/
+    public static final int                    SLAB_SIZE         = 1024 * 1024;
+    private static final int                   BLOCKS_PER_SLAB   = SLAB_SIZE / BLOCK_SIZE;
+
+    /** maximum bytes of the cache **/
+    private final int                          maxBytes;
+    /** maximum count of blocks **/
+    private final int                          maxBlocks;
+    /** count of blocks in slabs allocated **/
+    private int                                allocatedBlocks;
+    /** sum of length of images **/
+    private long                               usedBytes;
+
+    private List<ByteBuffer>                   slabs             = new ArrayList<ByteBuffer>();
+    /** index of free blocks, block i is in slab i / BLOCKS_PER_SLAB **/
+    private IntArrayList                       freeBlocks        = new IntArrayList();
+    /** entries in access order, the eldest is least recently used **/
+    private LinkedHashMap<String, BufferEntry> entries;
+
+    /** increased when cleared, blocks reserved before it are discarded **/
+    private int                                generation;
+
+    /** hit count of cache **/
+    private AtomicLong                         hitCount          = new AtomicLong(0);
+    /** miss count of cache **/
+    private AtomicLong                         missCount         = new AtomicLong(0);
+
+    /**
+     * maximum bytes of the cache is {@link #DEFAULT_MAX_BYTES}
+     */
+    public ImageBufferCache(){
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes maximum bytes of the cache, it will be rounded down to multiple of {@link #BLOCK_SIZE}
+     */
+    public ImageBufferCache(int maxBytes){
+        if (maxBytes < BLOCK_SIZE) {
+            throw new IllegalArgumentException("The maxBytes of cache must be not less than " + BLOCK_SIZE + ".");
+        }
+
+        this.maxBlocks = maxBytes / BLOCK_SIZE;
+        this.maxBytes = maxBlocks * BLOCK_SIZE;
+        this.entries = new LinkedHashMap<String, BufferEntry>(16, 0.75f, true);
+    }
+
+    /**
+     * get maximum bytes of the cache
+     * 
+     * @return
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * get sum of length of images in the cache
+     * 
+     * @return
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * get bytes of direct buffers allocated
+     * 
+     * @return
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long)allocatedBlocks * BLOCK_SIZE;
+    }
+
+    /**
+     * get the number of images in the cache
+     * 
+     * @return
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * get image bytes
+     * 
+     * @param key
+     * @return new array of image bytes if this cache contains the specified key, null otherwise.
+     */
+    public synchronized byte[] get(String key) {
+        BufferEntry entry = entries.get(key);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        byte[] data = new byte[entry.length];
+        int[] blocks = entry.blocks;
+        for (int i = 0, offset = 0; i < blocks.length; i++, offset += BLOCK_SIZE) {
+            ByteBuffer slab = slabOf(blocks[i]);
+            slab.position(positionOf(blocks[i]));
+            slab.get(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+        }
+        return data;
+    }
+
+    /**
+     * get stream of image, it reads from blocks directly without copying the whole image
+     * 
+     * @param key
+     * @return null if this cache does not contain the specified key. Reading it throws {@link IOException} if the
+     *         image is removed from this cache in the meantime
+     */
+    public synchronized InputStream getStream(String key) {
+        BufferEntry entry = entries.get(key);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return new BufferInputStream(entry);
+    }
+
+    /**
+     * same to {@link #getStream(String)}, but hit count and miss count are not changed, used to decode image just put
+     * 
+     * @param key
+     * @return
+     */
+    synchronized InputStream openStream(String key) {
+        BufferEntry entry = entries.get(key);
+        return (entry == null ? null : new BufferInputStream(entry));
+    }
+
+    /**
+     * put image bytes, bytes are copied, least recently used images will be removed if no enough space
+     * 
+     * @param key
+     * @param data
+     * @return whether data is put, false if data is empty or larger than {@link #getMaxBytes()}, or direct buffer
+     * cannot be allocated
+     */
+    public synchronized boolean put(String key, byte[] data) {
+        if (key == null || data == null) {
+            throw new IllegalArgumentException("The key and data can not be null.");
+        }
+
+        removeEntry(entries.remove(key));
+        int[] blocks = reserveBlocks(data.length);
+        if (blocks == null) {
+            return false;
+        }
+
+        for (int i = 0, offset = 0; i < blocks.length; i++, offset += BLOCK_SIZE) {
+            ByteBuffer slab = slabOf(blocks[i]);
+            slab.position(positionOf(blocks[i]));
+            slab.put(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+        }
+        entries.put(key, new BufferEntry(blocks, data.length));
+        usedBytes += data.length;
+        return true;
+    }
+
+    /**
+     * put image file, it's read into blocks directly without passing java heap, least recently used images will be
+     * removed if no enough space. File is read out of lock, so other operations are not blocked
+     * 
+     * @param key
+     * @param file
+     * @return whether file is put, false if file not exist, is empty, larger than {@link #getMaxBytes()}, or read fail
+     */
+    public boolean put(String key, File file) {
+        if (key == null || file == null) {
+            throw new IllegalArgumentException("The key and file can not be null.");
+        }
+
+        long fileLength = file.length();
+        if (fileLength <= 0 || fileLength > maxBytes) {
+            return false;
+        }
+
+        int length = (int)fileLength;
+        int[] blocks;
+        int reservedGeneration;
+        ByteBuffer[] targets;
+        synchronized (this) {
+            removeEntry(entries.remove(key));
+            blocks = reserveBlocks(length);
+            if (blocks == null) {
+                return false;
+            }
+
+            reservedGeneration = generation;
+            // reserved blocks are owned by this call only, so they can be filled by duplicates out of lock
+            targets = new ByteBuffer[blocks.length];
+            for (int i = 0; i < blocks.length; i++) {
+                int position = positionOf(blocks[i]);
+                targets[i] = slabOf(blocks[i]).duplicate();
+                targets[i].limit(position + Math.min(BLOCK_SIZE, length - i * BLOCK_SIZE));
+                targets[i].position(position);
+            }
+        }
+
+        boolean isRead = readFully(file, targets);
+        synchronized (this) {
+            if (reservedGeneration != generation) {
+                return false;
+            }
+            if (!isRead) {
+                for (int block : blocks) {
+                    freeBlocks.add(block);
+                }
+                return false;
+            }
+
+            removeEntry(entries.remove(key));
+            entries.put(key, new BufferEntry(blocks, length));
+            usedBytes += length;
+            return true;
+        }
+    }
+
+    /**
+     * whether this cache contains the specified key, not change the access order
+     * 
+     * @param key
+     * @return
+     */
+    public synchronized boolean containsKey(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * remove the specified key from cache
+     * 
+     * @param key
+     * @return whether the key exists
+     */
+    public synchronized boolean remove(String key) {
+        return removeEntry(entries.remove(key));
+    }
+
+    /**
+     * Removes all images from this cache, and releases direct buffers
+     */
+    public synchronized void clear() {
+        for (BufferEntry entry : entries.values()) {
+            entry.isRemoved = true;
+        }
+        entries.clear();
+        slabs.clear();
+        freeBlocks.clear();
+        allocatedBlocks = 0;
+        usedBytes = 0;
+        generation++;
+    }
+
+    /**
+     * get hit count
+     **/
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * get miss count
+     **/
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * get hit rate
+     * 
+     * @return
+     */
+    public double getHitRate() {
+        long hit = hitCount.get(), total = hit + missCount.get();
+        return (total == 0 ? 0 : ((double)hit) / total);
+    }
+
+    /**
+     * return blocks of entry to free blocks
+     * 
+     * @param entry
+     * @return false if entry is null
+     */
+    private boolean removeEntry(BufferEntry entry) {
+        if (entry == null) {
+            return false;
+        }
+
+        for (int block : entry.blocks) {
+            freeBlocks.add(block);
+        }
+        usedBytes -= entry.length;
+        entry.isRemoved = true;
+        return true;
+    }
+
+    /**
+     * take free blocks for data of length, least recently used images will be removed if no enough space
+     * 
+     * @param length
+     * @return null if length is 0 or larger than {@link #getMaxBytes()}, or blocks cannot be got
+     */
+    private int[] reserveBlocks(int length) {
+        int blockCount = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (blockCount == 0 || blockCount > maxBlocks) {
+            return null;
+        }
+
+        // blocks reserved by put of file in progress are neither free nor in entries
+        Iterator<BufferEntry> eldest = entries.values().iterator();
+        while (freeBlocks.size() + (maxBlocks - allocatedBlocks) < blockCount && eldest.hasNext()) {
+            BufferEntry entry = eldest.next();
+            eldest.remove();
+            removeEntry(entry);
+        }
+        if (freeBlocks.size() + (maxBlocks - allocatedBlocks) < blockCount) {
+            return null;
+        }
+        try {
+            while (freeBlocks.size() < blockCount) {
+                allocateSlab();
+            }
+        } catch (OutOfMemoryError e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        int[] blocks = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            blocks[i] = freeBlocks.removeAt(freeBlocks.size() - 1);
+        }
+        return blocks;
+    }
+
+    /**
+     * read file until all targets are full
+     * 
+     * @param file
+     * @param targets
+     * @return false if file is shorter than targets or read fail
+     */
+    private static boolean readFully(File file, ByteBuffer[] targets) {
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            for (ByteBuffer target : targets) {
+                while (target.hasRemaining()) {
+                    if (channel.read(target) == -1) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * allocate a new slab, the last slab may be smaller than {@link #SLAB_SIZE} to keep in {@link #getMaxBytes()}
+     */
+    private void allocateSlab() {
+        int blockCount = Math.min(BLOCKS_PER_SLAB, maxBlocks - allocatedBlocks);
+        slabs.add(ByteBuffer.allocateDirect(blockCount * BLOCK_SIZE));
+        for (int i = blockCount - 1; i >= 0; i--) {
+            freeBlocks.add(allocatedBlocks + i);
+        }
+        allocatedBlocks += blockCount;
+    }
+
+    private ByteBuffer slabOf(int block) {
+        return slabs.get(block / BLOCKS_PER_SLAB);
+    }
+
+    private static int positionOf(int block) {
+        return (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+    }
+
+    /**
+     * blocks and length of an image
+     */
+    private static class BufferEntry {
+
+        final int[] blocks;
+        final int   length;
+        /** whether removed from cache, its blocks may be reused, guarded by lock of cache **/
+        boolean     isRemoved;
+
+        BufferEntry(int[] blocks, int length){
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+
+    /**
+     * stream of an image, reads from blocks of cache in lock of cache
+     */
+    private class BufferInputStream extends InputStream {
+
+        private final BufferEntry entry;
+        private int               position     = 0;
+        private int               markPosition = 0;
+
+        BufferInputStream(BufferEntry entry){
+            this.entry = entry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xff);
+        }
+
+        /**
+         * read at most to the end of current block
+         */
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            synchronized (ImageBufferCache.this) {
+                if (entry.isRemoved) {
+                    throw new IOException("Image is removed from cache");
+                }
+                if (position >= entry.length) {
+                    return -1;
+                }
+
+                int block = entry.blocks[position / BLOCK_SIZE], offsetInBlock = position % BLOCK_SIZE;
+                int count = Math.min(length, Math.min(BLOCK_SIZE - offsetInBlock, entry.length - position));
+                ByteBuffer slab = slabOf(block);
+                slab.position(positionOf(block) + offsetInBlock);
+                slab.get(buffer, offset, count);
+                position += count;
+                return count;
+            }
+        }
+
+        @Override
+        public long skip(long n) {
+            long count = Math.max(0, Math.min(n, entry.length - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return entry.length - position;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+            markPosition = position;
+        }
+
+        @Override
+        public void reset() {
+            position = markPosition;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cn.trinea.android.common.service.impl;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
@@ -22,6 +23,10 @@ import cn.trinea.android.common.util.ImageUtils;
  * It's a cache with primary cache and secondary cache. It's a combination of {@link ImageMemoryCache} and
  * {@link ImageSDCardCache}. It applies to apps those used much images, like sina weibo, twitter, taobao, huaban, weixin
  * and so on.<br/>
+ * <br/>
+ * Between them there can be a {@link ImageBufferCache} which keeps encoded bytes of images, so image evicted from
+ * primary cache can be decoded again without reading sdcard. It's not used default, because its memory is counted
+ * against heap limit of app on Android, see {@link #setBufferCache(ImageBufferCache)}.<br/>
  * <ul>
  * <strong>Setting and Usage</strong>
  * <li>Use one of constructors in sections II to init cache</li>
@@ -42,6 +47,8 @@ import cn.trinea.android.common.util.ImageUtils;
  * <li>{@link SimpleCache#setCacheFullRemoveType(CacheFullRemoveType)} set remove type when primary cache is full</li>
  * <li>{@link #setCacheFullRemoveTypeOfSecondaryCache(CacheFullRemoveType)} set remove type when secondary cache is full
  * </li>
+ * <li>{@link #setBufferCache(ImageBufferCache)} set buffer cache between primary cache and secondary cache, default
+ * is null, means not use</li>
  * </ul>
  * <ul>
  * <strong>Constructor</strong>
@@ -54,13 +61,16 @@ import cn.trinea.android.common.util.ImageUtils;
  */
 public class ImageCache extends ImageMemoryCache {
 
-    private static final long  serialVersionUID     = 1L;
-    private ImageSDCardCache   secondaryCache;
+    private static final long          serialVersionUID     = 1L;
+    private ImageSDCardCache           secondaryCache;
+    /** cache of encoded image bytes, between primary and secondary cache, null means not used **/
+    private transient ImageBufferCache bufferCache;
 
     /** cache folder path which be used when saving images **/
-    public static final String DEFAULT_CACHE_FOLDER = Environment.getExternalStorageDirectory().getAbsolutePath()
-                                                      + File.separator + "Trinea" + File.separator + "AndroidCommon"
-                                                      + File.separator + "ImageCache";
+    public static final String         DEFAULT_CACHE_FOLDER = Environment.getExternalStorageDirectory()
+                                                                         .getAbsolutePath()
+                                                              + File.separator + "Trinea" + File.separator
+                                                              + "AndroidCommon" + File.separator + "ImageCache";
 
     /**
      * <ul>
@@ -133,15 +143,26 @@ public class ImageCache extends ImageMemoryCache {
 
             @Override
             public CacheObject<Drawable> onGetData(String key) {
+                ImageBufferCache buffer = bufferCache;
+                Drawable d = (buffer == null ? null : decodeStream(buffer.getStream(key)));
+                if (d != null) {
+                    return new CacheObject<Drawable>(d);
+                }
+
                 CacheObject<String> object = secondaryCache.get(key);
                 String imagePath = (object == null ? null : object.getData());
-                if (FileUtils.isFileExist(imagePath)) {
-                    Drawable d = ImageUtils.bitmapToDrawable(BitmapFactory.decodeFile(imagePath));
-                    return (d == null ? null : new CacheObject<Drawable>(d));
-                } else {
+                if (!FileUtils.isFileExist(imagePath)) {
                     secondaryCache.remove(key);
+                    return null;
+                }
+                // read file into buffer cache and decode from there, so file is read once
+                if (buffer != null && buffer.put(key, new File(imagePath))) {
+                    d = decodeStream(buffer.openStream(key));
                 }
-                return null;
+                if (d == null) {
+                    d = ImageUtils.bitmapToDrawable(BitmapFactory.decodeFile(imagePath));
+                }
+                return (d == null ? null : new CacheObject<Drawable>(d));
             }
         });
         super.setCheckNetwork(false);
@@ -152,6 +173,36 @@ public class ImageCache extends ImageMemoryCache {
         secondaryCache.setFileNameRule(new FileNameRuleImageUrl().setFileExtension(""));
     }
 
+    /**
+     * decode stream of buffer cache
+     * 
+     * @param stream
+     * @return null if stream is null or decode fail, like image removed from buffer cache while decoding
+     */
+    private static Drawable decodeStream(InputStream stream) {
+        return (stream == null ? null : ImageUtils.bitmapToDrawable(BitmapFactory.decodeStream(stream)));
+    }
+
+    /**
+     * get buffer cache which keeps encoded bytes of images, between primary cache and secondary cache
+     * 
+     * @return null if not used
+     */
+    public ImageBufferCache getBufferCache() {
+        return bufferCache;
+    }
+
+    /**
+     * set buffer cache which keeps encoded bytes of images, between primary cache and secondary cache. default is null.
+     * Its memory is counted against heap limit of app on Android like primary cache, so set it only if there is room
+     * for both, and image evicted from primary cache is often used again
+     * 
+     * @param bufferCache null means not use buffer cache, images are decoded from secondary cache directly
+     */
+    public void setBufferCache(ImageBufferCache bufferCache) {
+        this.bufferCache = bufferCache;
+    }
+
     /**
      * get http read image time out of secondary cache, if less than 0, not set. default is not set
      * 
@@ -173,11 +224,15 @@ public class ImageCache extends ImageMemoryCache {
     }
 
     /**
-     * clear both primary cache and secondary cache
+     * clear primary cache, buffer cache and secondary cache
      */
     @Override
     public void clear() {
         super.clear();
+        ImageBufferCache buffer = bufferCache;
+        if (buffer != null) {
+            buffer.clear();
+        }
         secondaryCache.clear();
     }
 
@@ -289,10 +344,21 @@ public class ImageCache extends ImageMemoryCache {
      * delete unused file in {@link #getCacheFolder()}, you can use it after {@link #loadDataFromDb(Context, String)} at
      * first time
      * 
+     * @return the sweeper started, can be used to pause, cancel and get result
      * @see {@link ImageSDCardCache#deleteUnusedFiles()}
      */
-    public void deleteUnusedFiles() {
-        secondaryCache.deleteUnusedFiles();
+    public UnusedFileSweeper deleteUnusedFiles() {
+        return secondaryCache.deleteUnusedFiles();
+    }
+
+    /**
+     * get a sweeper not started to delete unused file in {@link #getCacheFolder()}
+     * 
+     * @return
+     * @see {@link ImageSDCardCache#newUnusedFileSweeper()}
+     */
+    public UnusedFileSweeper newUnusedFileSweeper() {
+        return secondaryCache.newUnusedFileSweeper();
     }
 
     /**
@@ -314,11 +380,11 @@ public class ImageCache extends ImageMemoryCache {
     }
 
     /**
-     * delete all rows in db whose tag is same to tag at first, and insert all data in this cache to db
+     * save all data in this cache to db
      * <ul>
      * <strong>Attentions:</strong>
      * <li>If tag is null or empty, throws exception</li>
-     * <li>Will delete all rows in db whose tag is same to tag at first</li>
+     * <li>If data of this tag has been loaded or saved before, only rows of changed and removed data are written</li>
      * <li>You can use {@link #initData(Context, String)} or {@link #loadDataFromDb(Context, String)} to init data when
      * app start</li>
      * </ul>
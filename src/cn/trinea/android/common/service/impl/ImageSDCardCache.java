@@ -2,13 +2,18 @@ package cn.trinea.android.common.service.impl;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -19,12 +24,14 @@ import android.os.Looper;
 import android.os.Message;
 import android.util.Log;
 import android.view.View;
+import cn.trinea.android.common.dao.ImageSDCardCacheDao;
 import cn.trinea.android.common.dao.impl.ImageSDCardCacheDaoImpl;
 import cn.trinea.android.common.entity.CacheObject;
 import cn.trinea.android.common.service.CacheFullRemoveType;
 import cn.trinea.android.common.service.FileNameRule;
 import cn.trinea.android.common.util.FileUtils;
 import cn.trinea.android.common.util.ImageUtils;
+import cn.trinea.android.common.util.ObjectUtils;
 import cn.trinea.android.common.util.SizeUtils;
 import cn.trinea.android.common.util.SqliteUtils;
 import cn.trinea.android.common.util.StringUtils;
@@ -45,12 +52,14 @@ import cn.trinea.android.common.util.SystemUtils;
  * <li>{@link #initData(Context, String)} or {@link #loadDataFromDb(Context, String)} to init data when app start,
  * {@link #saveDataToDb(Context, String)} to save data when app exit</li>
  * <li>{@link #setFileNameRule(FileNameRule)} set file name rule which be used when saving images, default is
- * {@link FileNameRuleImageUrl}</li>
+ * {@link FileNameRuleImageUrl}, {@link FileNameRuleUrlHash} is recommended for large cache</li>
  * <li>{@link #setCacheFolder(String)} set cache folder path which be used when saving images, default is
  * {@link #DEFAULT_CACHE_FOLDER}</li>
  * <li>{@link #setHttpReadTimeOut(int)} set http read image time out, if less than 0, not set. default is not set</li>
  * <li>{@link #setOpenWaitingQueue(boolean)} set whether open waiting queue, default is true. If true, save all view
  * waiting for image loaded, else only save the newest one</li>
+ * <li>{@link #setEagerLoadCount(int)} set count of rows loaded before {@link #loadDataFromDb(Context, String)} return,
+ * default is {@link #DEFAULT_EAGER_LOAD_COUNT}</li>
  * <li>{@link PreloadDataCache#setOnGetDataListener(OnGetDataListener)} set how to get image, this cache will get image
  * and preload images by it</li>
  * <li>{@link SimpleCache#setCacheFullRemoveType(CacheFullRemoveType)} set remove type when cache is full</li>
@@ -67,52 +76,70 @@ import cn.trinea.android.common.util.SystemUtils;
  */
 public class ImageSDCardCache extends PreloadDataCache<String, String> {
 
-    private static final long                    serialVersionUID     = 1L;
+    private static final long                          serialVersionUID           = 1L;
 
-    private static final String                  TAG                  = "ImageSDCardCache";
+    private static final String                        TAG                        = "ImageSDCardCache";
 
     /** callback interface after image get success **/
-    private OnImageSDCallbackListener            onImageSDCallbackListener;
+    private OnImageSDCallbackListener                  onImageSDCallbackListener;
     /** cache folder path which be used when saving images, default is {@link #DEFAULT_CACHE_FOLDER} **/
-    private String                               cacheFolder          = DEFAULT_CACHE_FOLDER;
+    private String                                     cacheFolder                = DEFAULT_CACHE_FOLDER;
     /** file name rule which be used when saving images, default is {@link FileNameRuleImageUrl} **/
-    private FileNameRule                         fileNameRule         = new FileNameRuleImageUrl();
+    private FileNameRule                               fileNameRule               = new FileNameRuleImageUrl();
     /** http read image time out, if less than 0, not set. default is not set **/
-    private int                                  httpReadTimeOut      = -1;
+    private int                                        httpReadTimeOut            = -1;
     /**
      * whether open waiting queue, default is true. If true, save all view waiting for image loaded, else only save the
      * newest one
      **/
-    private boolean                              isOpenWaitingQueue   = true;
+    private boolean                                    isOpenWaitingQueue         = true;
+    /** count of the most recently used rows loaded before {@link #loadDataFromDb(Context, String)} return **/
+    private int                                        eagerLoadCount             = DEFAULT_EAGER_LOAD_COUNT;
 
     /** recommend default max cache size according to dalvik max memory **/
-    public static final int                      DEFAULT_MAX_SIZE     = getDefaultMaxSize();
+    public static final int                            DEFAULT_MAX_SIZE           = getDefaultMaxSize();
     /** cache folder path which be used when saving images **/
-    public static final String                   DEFAULT_CACHE_FOLDER = Environment.getExternalStorageDirectory()
-                                                                                   .getAbsolutePath()
-                                                                        + File.separator
-                                                                        + "Trinea"
-                                                                        + File.separator
-                                                                        + "AndroidCommon"
-                                                                        + File.separator + "ImageSDCardCache";
+    public static final String                         DEFAULT_CACHE_FOLDER       = Environment.getExternalStorageDirectory()
+                                                                                               .getAbsolutePath()
+                                                                                    + File.separator
+                                                                                    + "Trinea"
+                                                                                    + File.separator
+                                                                                    + "AndroidCommon"
+                                                                                    + File.separator + "ImageSDCardCache";
+
+    /** max count of saving only changed data to db continuously, then all rows of the tag will be rewritten **/
+    public static final int                            MAX_INCREMENTAL_SAVE_COUNT = 16;
+    /** default count of the most recently used rows loaded before {@link #loadDataFromDb(Context, String)} return **/
+    public static final int                            DEFAULT_EAGER_LOAD_COUNT   = 128;
 
     /** image got success message what **/
-    private static final int                     IMAGE_LOADED_WHAT    = 1;
+    private static final int                           IMAGE_LOADED_WHAT          = 1;
     /** image reloaded success message what **/
-    private static final int                     IMAGE_RELOADED_WHAT  = 2;
+    private static final int                           IMAGE_RELOADED_WHAT        = 2;
 
     /** thread pool whose wait for data got, attention, not the get data thread pool **/
-    private transient ExecutorService            threadPool           = Executors.newFixedThreadPool(SystemUtils.DEFAULT_THREAD_POOL_SIZE);
+    private transient ExecutorService                  threadPool                 = Executors.newFixedThreadPool(SystemUtils.DEFAULT_THREAD_POOL_SIZE);
     /**
      * key is image url, value is the newest view which waiting for image loaded, used when {@link #isOpenWaitingQueue}
      * is false
      **/
-    private transient Map<String, View>          viewMap;
+    private transient Map<String, View>                viewMap;
     /**
      * key is image url, value is view set those waiting for image loaded, used when {@link #isOpenWaitingQueue} is true
      **/
-    private transient Map<String, HashSet<View>> viewSetMap;
-    private transient Handler                    handler;
+    private transient Map<String, HashSet<View>>       viewSetMap;
+    private transient Handler                          handler;
+
+    /** tag of rows in db which {@link #savedMap} is same to, if null, next saving to db will rewrite all rows **/
+    private transient String                           savedTag;
+    /** copy of data saved in db, key is image url, used to find changed data when save to db **/
+    private transient Map<String, CacheObject<String>> savedMap;
+    /** count of saving only changed data to db since all rows rewritten **/
+    private transient int                              incrementalSaveCount;
+    /** lock of saved data, created again when deserialized **/
+    private transient Object                           savedLock                  = new Object();
+    /** lock released when data loading from db in background finish **/
+    private transient volatile CountDownLatch          finishLoadDataLock;
 
     /**
      * get image asynchronous. when get image success, it will pass to
@@ -277,6 +304,26 @@ public class ImageSDCardCache extends PreloadDataCache<String, String> {
         this.isOpenWaitingQueue = isOpenWaitingQueue;
     }
 
+    /**
+     * get count of the most recently used rows loaded before {@link #loadDataFromDb(Context, String)} return, default
+     * is {@link #DEFAULT_EAGER_LOAD_COUNT}
+     * 
+     * @return
+     */
+    public int getEagerLoadCount() {
+        return eagerLoadCount;
+    }
+
+    /**
+     * set count of the most recently used rows loaded before {@link #loadDataFromDb(Context, String)} return, the rest
+     * are loaded in background. default is {@link #DEFAULT_EAGER_LOAD_COUNT}
+     * 
+     * @param eagerLoadCount if less than 0, load all rows before return
+     */
+    public void setEagerLoadCount(int eagerLoadCount) {
+        this.eagerLoadCount = eagerLoadCount;
+    }
+
     /**
      * <ul>
      * <li>Get data listener is {@link #getDefaultOnGetImageListener()}</li>
@@ -506,36 +553,28 @@ public class ImageSDCardCache extends PreloadDataCache<String, String> {
     /**
      * delete unused file in {@link #getCacheFolder()}, you can use it after {@link #loadDataFromDb(Context, String)} at
      * first time
+     * <ul>
+     * <li>start a {@link UnusedFileSweeper} with default setting, it runs in a background thread, limits delete rate
+     * and pauses when cache is getting images</li>
+     * <li>if data is loading from db in background, wait for it finish at first</li>
+     * <li>use {@link #newUnusedFileSweeper()} to change setting or set listener before start</li>
+     * </ul>
+     * 
+     * @return the sweeper started, can be used to pause, cancel and get result
      */
-    public void deleteUnusedFiles() {
-        int size = getSize();
-        final HashSet<String> filePathSet = new HashSet<String>(size > 16 ? size : 16);
-        for (CacheObject<String> value : values()) {
-            if (value != null) {
-                filePathSet.add(value.getData());
-            }
-        }
-
-        threadPool.execute(new Runnable() {
-
-            @Override
-            public void run() {
+    public UnusedFileSweeper deleteUnusedFiles() {
+        return newUnusedFileSweeper().start();
+    }
 
-                try {
-                    File file = new File(getCacheFolder());
-                    if (file != null && file.exists() && file.isDirectory()) {
-                        for (File f : file.listFiles()) {
-                            if (f.isFile() && !filePathSet.contains(f.getPath())) {
-                                f.delete();
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    Log.e(TAG, "delete unused files fail.");
-                }
-            }
-        });
+    /**
+     * get a sweeper not started to delete unused file in {@link #getCacheFolder()}, set it and call
+     * {@link UnusedFileSweeper#start()}
+     * 
+     * @return
+     * @see #deleteUnusedFiles()
+     */
+    public UnusedFileSweeper newUnusedFileSweeper() {
+        return new UnusedFileSweeper(this);
     }
 
     /**
@@ -574,11 +613,11 @@ public class ImageSDCardCache extends PreloadDataCache<String, String> {
     }
 
     /**
-     * delete all rows in db whose tag is same to tag at first, and insert all data in imageSDCardCache to db
+     * save all data in imageSDCardCache to db
      * <ul>
      * <strong>Attentions:</strong>
      * <li>If tag is null or empty, throws exception</li>
-     * <li>Will delete all rows in db whose tag is same to tag at first</li>
+     * <li>If data of this tag has been loaded or saved before, only rows of changed and removed data are written</li>
      * <li>You can use {@link #initData(Context, String)} or {@link #loadDataFromDb(Context, String)} to init data when
      * app start</li>
      * </ul>
@@ -600,6 +639,8 @@ public class ImageSDCardCache extends PreloadDataCache<String, String> {
      * <li>If imageSDCardCache is null, throws exception</li>
      * <li>If tag is null or empty, throws exception</li>
      * <li>You should use {@link #saveDataToDb(Context, ImageSDCardCache, String)} to save data when app exit</li>
+     * <li>Only the most recently used {@link #getEagerLoadCount()} rows are loaded before return, the rest are loaded
+     * in background, saving to db and deleting unused files will wait for them</li>
      * </ul>
      * 
      * @param context
@@ -615,17 +656,58 @@ public class ImageSDCardCache extends PreloadDataCache<String, String> {
         if (StringUtils.isEmpty(tag)) {
             throw new IllegalArgumentException("The tag can not be null or empty.");
         }
-        return new ImageSDCardCacheDaoImpl(SqliteUtils.getInstance(context)).putIntoImageSDCardCache(imageSDCardCache,
-                                                                                                     tag);
+        final ImageSDCardCacheDao dao = new ImageSDCardCacheDaoImpl(SqliteUtils.getInstance(context));
+        synchronized (imageSDCardCache.savedLock) {
+            // rows read from db, only they are known to be in db, data put by app while loading is not
+            final Map<String, CacheObject<String>> loadedMap = new HashMap<String, CacheObject<String>>();
+            final int eagerLoadCount = imageSDCardCache.eagerLoadCount;
+            int count = dao.putIntoImageSDCardCache(imageSDCardCache, tag, 0, eagerLoadCount, loadedMap);
+            if (count < 0) {
+                imageSDCardCache.resetSavedData(null, null);
+                return false;
+            }
+            if (eagerLoadCount < 0 || count < eagerLoadCount) {
+                imageSDCardCache.resetSavedData(tag, loadedMap);
+                return true;
+            }
+
+            final CountDownLatch finishLoadDataLock = new CountDownLatch(1);
+            imageSDCardCache.finishLoadDataLock = finishLoadDataLock;
+            imageSDCardCache.threadPool.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    synchronized (imageSDCardCache.savedLock) {
+                        try {
+                            // read the rest rows by one cursor, paging with offset sorts all rows again for each page
+                            if (dao.putIntoImageSDCardCache(imageSDCardCache, tag, eagerLoadCount, -1, loadedMap) < 0) {
+                                imageSDCardCache.resetSavedData(null, null);
+                            } else {
+                                imageSDCardCache.resetSavedData(tag, loadedMap);
+                            }
+                        } catch (Exception e) {
+                            Log.e(TAG, "load data from db fail.", e);
+                            imageSDCardCache.resetSavedData(null, null);
+                        } finally {
+                            finishLoadDataLock.countDown();
+                        }
+                    }
+                }
+            });
+            return true;
+        }
     }
 
     /**
-     * delete all rows in db whose tag is same to tag at first, and insert all data in imageSDCardCache to db
+     * save all data in imageSDCardCache to db
      * <ul>
      * <strong>Attentions:</strong>
      * <li>If imageSDCardCache is null, throws exception</li>
      * <li>If tag is null or empty, throws exception</li>
-     * <li>Will delete all rows in db whose tag is same to tag at first</li>
+     * <li>If data of this tag has been loaded or saved before, only rows of changed and removed data are written, so
+     * it's cheap to save frequently</li>
+     * <li>Else or every {@link #MAX_INCREMENTAL_SAVE_COUNT} times, will delete all rows in db whose tag is same to tag
+     * at first and insert all data again</li>
      * <li>You can use {@link #initData(Context, String)} or {@link #loadDataFromDb(Context, ImageSDCardCache, String)}
      * to init data when app start</li>
      * </ul>
@@ -643,8 +725,130 @@ public class ImageSDCardCache extends PreloadDataCache<String, String> {
         if (StringUtils.isEmpty(tag)) {
             throw new IllegalArgumentException("The tag can not be null or empty.");
         }
-        return new ImageSDCardCacheDaoImpl(SqliteUtils.getInstance(context)).deleteAndInsertImageSDCardCache(imageSDCardCache,
-                                                                                                             tag);
+
+        imageSDCardCache.waitForLoadData();
+        ImageSDCardCacheDao dao = new ImageSDCardCacheDaoImpl(SqliteUtils.getInstance(context));
+        synchronized (imageSDCardCache.savedLock) {
+            if (tag.equals(imageSDCardCache.savedTag) && imageSDCardCache.savedMap != null
+                && imageSDCardCache.incrementalSaveCount < MAX_INCREMENTAL_SAVE_COUNT) {
+                return imageSDCardCache.saveChangedDataToDb(dao, tag);
+            }
+
+            Map<String, CacheObject<String>> savedMap = imageSDCardCache.copyData();
+            if (!dao.deleteAndInsertImageSDCardCache(imageSDCardCache, tag)) {
+                imageSDCardCache.resetSavedData(null, null);
+                return false;
+            }
+            imageSDCardCache.savedTag = tag;
+            imageSDCardCache.savedMap = savedMap;
+            imageSDCardCache.incrementalSaveCount = 0;
+            return true;
+        }
+    }
+
+    /**
+     * save data changed or removed since last save to db, compare with {@link #savedMap}
+     * 
+     * @param dao
+     * @param tag
+     * @return
+     */
+    private boolean saveChangedDataToDb(ImageSDCardCacheDao dao, String tag) {
+        Map<String, CacheObject<String>> changedMap = new HashMap<String, CacheObject<String>>();
+        for (Entry<String, CacheObject<String>> entry : entrySet()) {
+            CacheObject<String> value = entry.getValue();
+            if (value != null && !isSameData(savedMap.get(entry.getKey()), value)) {
+                changedMap.put(entry.getKey(), copyCacheObject(value));
+            }
+        }
+        List<String> removedUrls = new ArrayList<String>();
+        for (String url : savedMap.keySet()) {
+            if (!cache.containsKey(url)) {
+                removedUrls.add(url);
+            }
+        }
+        if (changedMap.isEmpty() && removedUrls.isEmpty()) {
+            return true;
+        }
+
+        if (!dao.updateImageSDCardCache(changedMap, removedUrls, tag)) {
+            // some rows may have been written, rewrite all rows next time
+            resetSavedData(null, null);
+            return false;
+        }
+        savedMap.putAll(changedMap);
+        for (String url : removedUrls) {
+            savedMap.remove(url);
+        }
+        incrementalSaveCount++;
+        return true;
+    }
+
+    /**
+     * wait for data loading from db in background finish
+     */
+    void waitForLoadData() {
+        CountDownLatch lock = finishLoadDataLock;
+        if (lock != null) {
+            try {
+                lock.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * reset data saved in db
+     * 
+     * @param tag if null, next saving to db will rewrite all rows
+     * @param dataInDb data same to rows of tag in db, not copied
+     */
+    private void resetSavedData(String tag, Map<String, CacheObject<String>> dataInDb) {
+        savedTag = tag;
+        savedMap = (tag == null ? null : dataInDb);
+        incrementalSaveCount = 0;
+    }
+
+    /**
+     * copy all data in cache
+     * 
+     * @return key is image url, value is copy of cache object
+     */
+    private Map<String, CacheObject<String>> copyData() {
+        int size = cache.size();
+        Map<String, CacheObject<String>> dataMap = new HashMap<String, CacheObject<String>>(size > 16 ? size : 16);
+        for (Entry<String, CacheObject<String>> entry : cache.entrySet()) {
+            if (entry.getValue() != null) {
+                dataMap.put(entry.getKey(), copyCacheObject(entry.getValue()));
+            }
+        }
+        return dataMap;
+    }
+
+    private static CacheObject<String> copyCacheObject(CacheObject<String> value) {
+        CacheObject<String> copy = new CacheObject<String>(value.getData());
+        copy.setEnterTime(value.getEnterTime());
+        copy.setLastUsedTime(value.getLastUsedTime());
+        copy.setUsedCount(value.getUsedCount());
+        copy.setPriority(value.getPriority());
+        copy.setExpired(value.isExpired());
+        copy.setForever(value.isForever());
+        return copy;
+    }
+
+    /**
+     * whether all columns loaded from db are same, enter time is not compared, because it is set to now when loaded
+     * 
+     * @param saved
+     * @param value
+     * @return
+     */
+    private static boolean isSameData(CacheObject<String> saved, CacheObject<String> value) {
+        return saved != null && ObjectUtils.isEquals(saved.getData(), value.getData())
+               && saved.getLastUsedTime() == value.getLastUsedTime() && saved.getUsedCount() == value.getUsedCount()
+               && saved.getPriority() == value.getPriority() && saved.isExpired() == value.isExpired()
+               && saved.isForever() == value.isForever();
     }
 
     /**
@@ -706,6 +910,18 @@ public class ImageSDCardCache extends PreloadDataCache<String, String> {
         };
     }
 
+    /**
+     * transient fields are not restored when deserialized, create lock of saved data again
+     * 
+     * @param in
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        savedLock = new Object();
+    }
+
     /**
      * get recommend default max cache size according to dalvik max memory
      * 
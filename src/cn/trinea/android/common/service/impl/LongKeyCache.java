@@ -0,0 +1,346 @@
+package cn.trinea.android.common.service.impl;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.trinea.android.common.entity.CacheObject;
+import cn.trinea.android.common.service.CacheFullRemoveType;
+import cn.trinea.android.common.util.LongArrayList;
+import cn.trinea.android.common.util.LongObjectMap;
+
+/**
+ * Cache with long key<br/>
+ * <br/>
+ * Same to {@link SimpleCache}, but key is long and elements are stored in {@link LongObjectMap}, so key is not boxed
+ * when get or put, for caches keyed by id.<br/>
+ * <ul>
+ * <strong>Usage</strong>
+ * <li>{@link #setCacheFullRemoveType(CacheFullRemoveType)} set remove type when cache is full</li>
+ * <li>{@link #setValidTime(long)} set valid time of elements in cache, in mills</li>
+ * <li>{@link #put(long, CacheObject)} or {@link #put(long, Object)} put element</li>
+ * <li>{@link #get(long)} get element</li>
+ * </ul>
+ * <ul>
+ * <strong>About hit and miss of the cache</strong>
+ * <li>{@link #getHitRate()} get hit rate of the cache</li>
+ * <li>{@link #getHitCount()} get hit count of the cache</li>
+ * <li>{@link #getMissCount()} get miss count of the cache</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>It does not implement {@link cn.trinea.android.common.service.Cache}, whose key is object</li>
+ * <li>All operations are synchronized</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-30
+ */
+public class LongKeyCache<V> implements Serializable {
+
+    private static final long             serialVersionUID = 1L;
+
+    /** default maximum capacity of the cache **/
+    public static final int               DEFAULT_MAX_SIZE = 64;
+
+    /** maximum size of the cache, if not set, use {@link #DEFAULT_MAX_SIZE} **/
+    private final int                     maxSize;
+
+    /** valid time of elements in cache, in mills. It means not invalid if less than 0 **/
+    private long                          validTime;
+
+    /** remove type when cache is full **/
+    private CacheFullRemoveType<V>        cacheFullRemoveType;
+
+    /** map to storage element **/
+    private LongObjectMap<CacheObject<V>> cache;
+
+    /** hit count of cache **/
+    private AtomicLong                    hitCount         = new AtomicLong(0);
+    /** miss count of cache **/
+    private AtomicLong                    missCount        = new AtomicLong(0);
+
+    /**
+     * <ul>
+     * <li>Maximum size of the cache is {@link #DEFAULT_MAX_SIZE}</li>
+     * <li>Elements of the cache will not invalid, can set by {@link #setValidTime(long)}</li>
+     * <li>Remove type is {@link RemoveTypeEnterTimeFirst} when cache is full</li>
+     * </ul>
+     */
+    public LongKeyCache(){
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * <ul>
+     * <li>Elements of the cache will not invalid, can set by {@link #setValidTime(long)}</li>
+     * <li>Remove type is {@link RemoveTypeEnterTimeFirst} when cache is full</li>
+     * </ul>
+     * 
+     * @param maxSize maximum size of the cache
+     */
+    public LongKeyCache(int maxSize){
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maxSize of cache must be greater than 0.");
+        }
+
+        this.maxSize = maxSize;
+        this.cacheFullRemoveType = new RemoveTypeEnterTimeFirst<V>();
+        this.validTime = -1;
+        this.cache = new LongObjectMap<CacheObject<V>>(maxSize);
+    }
+
+    /**
+     * get the maximum capacity of the cache
+     * 
+     * @return
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * get valid time of elements in cache, in mills. It means not invalid if less than 0
+     * 
+     * @return
+     */
+    public long getValidTime() {
+        return validTime;
+    }
+
+    /**
+     * set valid time of elements in cache, in mills
+     * 
+     * @param validTime valid time of elements in cache, in mills. If less than 0, it will be set to -1 and means not
+     * invalid
+     */
+    public void setValidTime(long validTime) {
+        this.validTime = validTime <= 0 ? -1 : validTime;
+    }
+
+    /**
+     * get remove type when cache is full
+     * 
+     * @return
+     */
+    public CacheFullRemoveType<V> getCacheFullRemoveType() {
+        return cacheFullRemoveType;
+    }
+
+    /**
+     * set remove type when cache is full
+     * 
+     * @param cacheFullRemoveType the cacheFullRemoveType to set
+     */
+    public void setCacheFullRemoveType(CacheFullRemoveType<V> cacheFullRemoveType) {
+        if (cacheFullRemoveType == null) {
+            throw new IllegalArgumentException("The cacheFullRemoveType of cache cannot be null.");
+        }
+        this.cacheFullRemoveType = cacheFullRemoveType;
+    }
+
+    /**
+     * get the number of elements in the cache valid
+     * 
+     * @return
+     */
+    public synchronized int getSize() {
+        removeExpired();
+        return cache.size();
+    }
+
+    /**
+     * get element
+     * 
+     * @param key
+     * @return element if this cache contains the specified key and the element is valid, null otherwise.
+     */
+    public synchronized CacheObject<V> get(long key) {
+        CacheObject<V> obj = cache.get(key);
+        if (obj != null && !isExpired(obj)) {
+            hitCount.incrementAndGet();
+            obj.getAndIncrementUsedCount();
+            obj.setLastUsedTime(System.currentTimeMillis());
+            return obj;
+        } else {
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * put element
+     * 
+     * @param key
+     * @param value data of {@link CacheObject}
+     * @return return null if cache is full and cannot remove one, else return the value be putted
+     * @see LongKeyCache#put(long, CacheObject)
+     */
+    public CacheObject<V> put(long key, V value) {
+        CacheObject<V> obj = new CacheObject<V>();
+        obj.setData(value);
+        obj.setForever(validTime == -1);
+        return put(key, obj);
+    }
+
+    /**
+     * put element, value not allowed to be null
+     * 
+     * @param key
+     * @param value
+     * @return return null if cache is full and cannot remove one, else return the value be putted
+     */
+    public synchronized CacheObject<V> put(long key, CacheObject<V> value) {
+        if (value == null) {
+            throw new IllegalArgumentException("The value can not be null.");
+        }
+
+        if (cache.size() >= maxSize && !cache.containsKey(key)) {
+            if (removeExpired() <= 0) {
+                if (cacheFullRemoveType instanceof RemoveTypeNotRemove) {
+                    return null;
+                }
+                if (fullRemoveOne() == null) {
+                    return null;
+                }
+            }
+        }
+        value.setEnterTime(System.currentTimeMillis());
+        cache.put(key, value);
+        return value;
+    }
+
+    /**
+     * whether this cache contains the specified key.
+     * 
+     * @param key
+     * @return true if this cache contains the specified key and the element is valid, false otherwise.
+     */
+    public synchronized boolean containsKey(long key) {
+        CacheObject<V> obj = cache.get(key);
+        return obj != null && !isExpired(obj);
+    }
+
+    /**
+     * remove the specified key from cache
+     * 
+     * @param key
+     * @return the value of the removed or null if no mapping for the specified key was found.
+     */
+    public synchronized CacheObject<V> remove(long key) {
+        return cache.remove(key);
+    }
+
+    /**
+     * Removes all elements from this cache, leaving it empty.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * get keys of elements valid
+     * 
+     * @return new array
+     */
+    public synchronized long[] keys() {
+        removeExpired();
+        return cache.keys();
+    }
+
+    /**
+     * remove a element when cache is full, according to {@link #getCacheFullRemoveType()}
+     * 
+     * @return the value of the removed or null if no element can be remove.
+     */
+    private CacheObject<V> fullRemoveOne() {
+        if (cache.isEmpty() || cacheFullRemoveType instanceof RemoveTypeNotRemove) {
+            return null;
+        }
+
+        RemoveOneVisitor visitor = new RemoveOneVisitor();
+        cache.forEach(visitor);
+        return visitor.valueToRemove == null ? null : cache.remove(visitor.keyToRemove);
+    }
+
+    /**
+     * remove invalid elements
+     * 
+     * @return the count be removed
+     */
+    private int removeExpired() {
+        if (validTime == -1) {
+            return 0;
+        }
+
+        final LongArrayList expiredKeys = new LongArrayList();
+        cache.forEach(new LongObjectMap.EntryVisitor<CacheObject<V>>() {
+
+            @Override
+            public boolean visit(long key, CacheObject<V> value) {
+                if (isExpired(value)) {
+                    expiredKeys.add(key);
+                }
+                return true;
+            }
+        });
+        for (int i = 0; i < expiredKeys.size(); i++) {
+            cache.remove(expiredKeys.get(i));
+        }
+        return expiredKeys.size();
+    }
+
+    /**
+     * whether the element has invalided, same to {@link SimpleCache#isExpired(CacheObject)}
+     * 
+     * @param obj
+     * @return
+     */
+    private boolean isExpired(CacheObject<V> obj) {
+        if (validTime == -1) {
+            return false;
+        }
+        return obj == null || (obj.isExpired() && !obj.isForever())
+               || (obj.getEnterTime() + validTime) < System.currentTimeMillis();
+    }
+
+    /**
+     * get hit count
+     **/
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * get miss count
+     **/
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * get hit rate
+     * 
+     * @return
+     */
+    public double getHitRate() {
+        long hit = hitCount.get(), total = hit + missCount.get();
+        return (total == 0 ? 0 : ((double)hit) / total);
+    }
+
+    /**
+     * find the element to remove according to {@link #getCacheFullRemoveType()}
+     */
+    private class RemoveOneVisitor implements LongObjectMap.EntryVisitor<CacheObject<V>> {
+
+        long           keyToRemove;
+        CacheObject<V> valueToRemove;
+
+        @Override
+        public boolean visit(long key, CacheObject<V> value) {
+            if (valueToRemove == null || cacheFullRemoveType.compare(value, valueToRemove) < 0) {
+                keyToRemove = key;
+                valueToRemove = value;
+            }
+            return true;
+        }
+    }
+}
@@ -309,6 +309,15 @@ public class PreloadDataCache<K, V> extends SimpleCache<K, V> {
         return gettingDataThreadMap.containsKey(key);
     }
 
+    /**
+     * get count of threads those getting data
+     * 
+     * @return
+     */
+    public synchronized int getGettingDataCount() {
+        return gettingDataThreadMap.size();
+    }
+
     /**
      * <ul>
      * <li>Maximum size of the cache is {@link SimpleCache#DEFAULT_MAX_SIZE}</li>
@@ -234,6 +234,40 @@ public class SimpleCache<K, V> implements Cache<K, V>, Serializable {
         return value;
     }
 
+    /**
+     * put elements restored from storage in bulk, such as db or file
+     * <ul>
+     * <li>not remove expired or other elements when cache is full, the rest elements are ignored</li>
+     * <li>not replace elements already in cache, they are newer than restored ones</li>
+     * <li>enter time of elements will be set to now, same to {@link #put(Object, CacheObject)}</li>
+     * </ul>
+     * 
+     * @param restoredMap
+     * @return count of elements be putted
+     */
+    public synchronized int putAllRestored(Map<K, CacheObject<V>> restoredMap) {
+        if (MapUtils.isEmpty(restoredMap)) {
+            return 0;
+        }
+
+        int count = 0;
+        long now = System.currentTimeMillis();
+        for (Entry<K, CacheObject<V>> entry : restoredMap.entrySet()) {
+            if (cache.size() >= maxSize) {
+                break;
+            }
+
+            K key = entry.getKey();
+            CacheObject<V> value = entry.getValue();
+            if (key != null && value != null && !cache.containsKey(key)) {
+                value.setEnterTime(now);
+                cache.put(key, value);
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * pull all elements of cache2 to this
      * 
@@ -0,0 +1,307 @@
+package cn.trinea.android.common.service.impl;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+import android.os.Process;
+import android.util.Log;
+import cn.trinea.android.common.entity.CacheObject;
+
+/**
+ * <strong>Unused File Sweeper</strong><br/>
+ * <br/>
+ * Delete files in {@link ImageSDCardCache#getCacheFolder()} which are not in the cache, run in a background thread
+ * and not disturb image loading.<br/>
+ * <ul>
+ * <strong>Setting and Usage</strong>
+ * <li>{@link ImageSDCardCache#deleteUnusedFiles()} start a sweeper with default setting</li>
+ * <li>{@link ImageSDCardCache#newUnusedFileSweeper()} get a sweeper not started, then set it as below</li>
+ * <li>{@link #setMaxDeleteCountPerSecond(int)} set max count of files deleted per second, default is
+ * {@link #DEFAULT_MAX_DELETE_COUNT_PER_SECOND}</li>
+ * <li>{@link #setPauseWhenGettingData(boolean)} set whether to pause when cache is getting images, default is true</li>
+ * <li>{@link #setOnSweepListener(OnSweepListener)} set callback interface after sweep finish</li>
+ * <li>{@link #start()} start sweep in a new thread</li>
+ * <li>{@link #pause()}, {@link #resume()} and {@link #cancel()} control sweeping</li>
+ * <li>{@link #getDeletedCount()} and {@link #getReclaimedBytes()} get result</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Folders are listed one by one, so cache folder with sub folders like {@link FileNameRuleUrlHash} is faster</li>
+ * <li>Files modified after sweep start will not be deleted, they may be images just got</li>
+ * <li>Setting and listener can only be set before {@link #start()}, else throws {@link IllegalStateException}</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-12
+ */
+public class UnusedFileSweeper implements Runnable {
+
+    private static final String    TAG                                 = "UnusedFileSweeper";
+
+    /** default max count of files deleted per second **/
+    public static final int        DEFAULT_MAX_DELETE_COUNT_PER_SECOND = 50;
+    /** interval to check whether cache is still getting images when paused, in mills **/
+    private static final long      PAUSE_CHECK_INTERVAL                = 200;
+
+    private final ImageSDCardCache imageSDCardCache;
+    /** max count of files deleted per second, if less than or equal to 0, not limit **/
+    private int                    maxDeleteCountPerSecond             = DEFAULT_MAX_DELETE_COUNT_PER_SECOND;
+    /** whether to pause when cache is getting images **/
+    private boolean                isPauseWhenGettingData              = true;
+    private OnSweepListener        onSweepListener;
+
+    private volatile boolean       isStarted                           = false;
+    private volatile boolean       isPaused                            = false;
+    private volatile boolean       isCanceled                          = false;
+    private volatile boolean       isFinished                          = false;
+    private volatile int           deletedCount                        = 0;
+    private volatile long          reclaimedBytes                      = 0;
+
+    /**
+     * @param imageSDCardCache cache whose unused files will be deleted
+     */
+    public UnusedFileSweeper(ImageSDCardCache imageSDCardCache){
+        if (imageSDCardCache == null) {
+            throw new IllegalArgumentException("The imageSDCardCache can not be null.");
+        }
+        this.imageSDCardCache = imageSDCardCache;
+    }
+
+    /**
+     * start sweep in a new thread, setting is fixed after start
+     * 
+     * @return this
+     * @throws IllegalStateException if started already
+     */
+    public synchronized UnusedFileSweeper start() {
+        checkNotStarted();
+        isStarted = true;
+        new Thread(this, TAG).start();
+        return this;
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        long startTime = System.currentTimeMillis();
+        try {
+            // rows may be still loading from db in background
+            imageSDCardCache.waitForLoadData();
+            int size = imageSDCardCache.getSize();
+            HashSet<String> filePathSet = new HashSet<String>(size > 16 ? size : 16);
+            for (CacheObject<String> value : imageSDCardCache.values()) {
+                if (value != null) {
+                    filePathSet.add(value.getData());
+                }
+            }
+
+            File cacheFolder = new File(imageSDCardCache.getCacheFolder());
+            if (!cacheFolder.isDirectory()) {
+                return;
+            }
+
+            LinkedList<File> folderList = new LinkedList<File>();
+            folderList.add(cacheFolder);
+            long secondStartTime = System.currentTimeMillis();
+            int secondDeletedCount = 0;
+            while (!folderList.isEmpty() && !isCanceled) {
+                File folder = folderList.removeFirst();
+                String[] fileNames = folder.list();
+                if (fileNames == null) {
+                    continue;
+                }
+
+                for (String fileName : fileNames) {
+                    waitIfPaused();
+                    if (isCanceled) {
+                        break;
+                    }
+
+                    File f = new File(folder, fileName);
+                    if (filePathSet.contains(f.getPath())) {
+                        continue;
+                    }
+                    if (f.isDirectory()) {
+                        folderList.add(f);
+                        continue;
+                    }
+                    if (!f.isFile() || f.lastModified() >= startTime) {
+                        continue;
+                    }
+
+                    if (maxDeleteCountPerSecond > 0 && secondDeletedCount >= maxDeleteCountPerSecond) {
+                        long sleepTime = secondStartTime + 1000 - System.currentTimeMillis();
+                        if (sleepTime > 0) {
+                            Thread.sleep(sleepTime);
+                        }
+                        secondStartTime = System.currentTimeMillis();
+                        secondDeletedCount = 0;
+                    }
+                    long length = f.length();
+                    if (f.delete()) {
+                        deletedCount++;
+                        reclaimedBytes += length;
+                        secondDeletedCount++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "sweep interrupted.");
+        } catch (Exception e) {
+            Log.e(TAG, "delete unused files fail.", e);
+        } finally {
+            isFinished = true;
+            if (onSweepListener != null) {
+                onSweepListener.onSweepFinished(deletedCount, reclaimedBytes, isCanceled);
+            }
+        }
+    }
+
+    /**
+     * wait while paused manually or cache is getting images
+     * 
+     * @throws InterruptedException
+     */
+    private void waitIfPaused() throws InterruptedException {
+        while (!isCanceled
+               && (isPaused || (isPauseWhenGettingData && imageSDCardCache.getGettingDataCount() > 0))) {
+            Thread.sleep(PAUSE_CHECK_INTERVAL);
+        }
+    }
+
+    /**
+     * pause sweep until {@link #resume()}
+     */
+    public void pause() {
+        isPaused = true;
+    }
+
+    /**
+     * resume sweep after {@link #pause()}
+     */
+    public void resume() {
+        isPaused = false;
+    }
+
+    /**
+     * stop sweep, files deleted will not be restored
+     */
+    public void cancel() {
+        isCanceled = true;
+    }
+
+    /**
+     * whether sweep has finished or canceled
+     * 
+     * @return
+     */
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /**
+     * get count of files deleted
+     * 
+     * @return
+     */
+    public int getDeletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * get bytes of files deleted
+     * 
+     * @return
+     */
+    public long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    /**
+     * get max count of files deleted per second, default is {@link #DEFAULT_MAX_DELETE_COUNT_PER_SECOND}
+     * 
+     * @return
+     */
+    public int getMaxDeleteCountPerSecond() {
+        return maxDeleteCountPerSecond;
+    }
+
+    /**
+     * set max count of files deleted per second, default is {@link #DEFAULT_MAX_DELETE_COUNT_PER_SECOND}
+     * 
+     * @param maxDeleteCountPerSecond if less than or equal to 0, not limit
+     * @return this
+     * @throws IllegalStateException if started already
+     */
+    public synchronized UnusedFileSweeper setMaxDeleteCountPerSecond(int maxDeleteCountPerSecond) {
+        checkNotStarted();
+        this.maxDeleteCountPerSecond = maxDeleteCountPerSecond;
+        return this;
+    }
+
+    /**
+     * get whether to pause when cache is getting images, default is true
+     * 
+     * @return
+     */
+    public boolean isPauseWhenGettingData() {
+        return isPauseWhenGettingData;
+    }
+
+    /**
+     * set whether to pause when cache is getting images, default is true
+     * 
+     * @param isPauseWhenGettingData
+     * @return this
+     * @throws IllegalStateException if started already
+     */
+    public synchronized UnusedFileSweeper setPauseWhenGettingData(boolean isPauseWhenGettingData) {
+        checkNotStarted();
+        this.isPauseWhenGettingData = isPauseWhenGettingData;
+        return this;
+    }
+
+    public OnSweepListener getOnSweepListener() {
+        return onSweepListener;
+    }
+
+    /**
+     * set callback interface after sweep finish
+     * 
+     * @param onSweepListener
+     * @return this
+     * @throws IllegalStateException if started already
+     */
+    public synchronized UnusedFileSweeper setOnSweepListener(OnSweepListener onSweepListener) {
+        checkNotStarted();
+        this.onSweepListener = onSweepListener;
+        return this;
+    }
+
+    /**
+     * setting is read by sweep thread without lock, so it can not be changed after start
+     */
+    private void checkNotStarted() {
+        if (isStarted) {
+            throw new IllegalStateException("The sweeper has been started.");
+        }
+    }
+
+    /**
+     * callback interface after sweep finish
+     * 
+     * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-12
+     */
+    public interface OnSweepListener extends Serializable {
+
+        /**
+         * callback function after sweep finish, run on sweep thread, not ui thread
+         * 
+         * @param deletedCount count of files deleted
+         * @param reclaimedBytes bytes of files deleted
+         * @param isCanceled whether sweep is canceled by {@link UnusedFileSweeper#cancel()}
+         */
+        public void onSweepFinished(int deletedCount, long reclaimedBytes, boolean isCanceled);
+    }
+}
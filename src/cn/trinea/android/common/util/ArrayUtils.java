@@ -131,9 +131,21 @@ public class ArrayUtils {
             throw new IllegalArgumentException("The length of source array must be greater than 0.");
         }
 
-        Long[] array = ObjectUtils.transformLongArray(sourceArray);
-        return getLast(array, value, defaultValue, isCircle);
+        int currentPosition = -1;
+        for (int i = 0; i < sourceArray.length; i++) {
+            if (sourceArray[i] == value) {
+                currentPosition = i;
+                break;
+            }
+        }
+        if (currentPosition == -1) {
+            return defaultValue;
+        }
 
+        if (currentPosition == 0) {
+            return isCircle ? sourceArray[sourceArray.length - 1] : defaultValue;
+        }
+        return sourceArray[currentPosition - 1];
     }
 
     /**
@@ -144,8 +156,21 @@ public class ArrayUtils {
             throw new IllegalArgumentException("The length of source array must be greater than 0.");
         }
 
-        Long[] array = ObjectUtils.transformLongArray(sourceArray);
-        return getNext(array, value, defaultValue, isCircle);
+        int currentPosition = -1;
+        for (int i = 0; i < sourceArray.length; i++) {
+            if (sourceArray[i] == value) {
+                currentPosition = i;
+                break;
+            }
+        }
+        if (currentPosition == -1) {
+            return defaultValue;
+        }
+
+        if (currentPosition == sourceArray.length - 1) {
+            return isCircle ? sourceArray[0] : defaultValue;
+        }
+        return sourceArray[currentPosition + 1];
     }
 
     /**
@@ -156,9 +181,21 @@ public class ArrayUtils {
             throw new IllegalArgumentException("The length of source array must be greater than 0.");
         }
 
-        Integer[] array = ObjectUtils.transformIntArray(sourceArray);
-        return getLast(array, value, defaultValue, isCircle);
+        int currentPosition = -1;
+        for (int i = 0; i < sourceArray.length; i++) {
+            if (sourceArray[i] == value) {
+                currentPosition = i;
+                break;
+            }
+        }
+        if (currentPosition == -1) {
+            return defaultValue;
+        }
 
+        if (currentPosition == 0) {
+            return isCircle ? sourceArray[sourceArray.length - 1] : defaultValue;
+        }
+        return sourceArray[currentPosition - 1];
     }
 
     /**
@@ -169,7 +206,20 @@ public class ArrayUtils {
             throw new IllegalArgumentException("The length of source array must be greater than 0.");
         }
 
-        Integer[] array = ObjectUtils.transformIntArray(sourceArray);
-        return getNext(array, value, defaultValue, isCircle);
+        int currentPosition = -1;
+        for (int i = 0; i < sourceArray.length; i++) {
+            if (sourceArray[i] == value) {
+                currentPosition = i;
+                break;
+            }
+        }
+        if (currentPosition == -1) {
+            return defaultValue;
+        }
+
+        if (currentPosition == sourceArray.length - 1) {
+            return isCircle ? sourceArray[0] : defaultValue;
+        }
+        return sourceArray[currentPosition + 1];
     }
 }
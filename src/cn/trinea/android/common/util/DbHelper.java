@@ -34,5 +34,15 @@ public class DbHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.beginTransaction();
+        try {
+            if (oldVersion < 2) {
+                db.execSQL(DbConstants.UPGRADE_HTTP_CACHE_TABLE_ETAG_SQL.toString());
+                db.execSQL(DbConstants.UPGRADE_HTTP_CACHE_TABLE_LAST_MODIFIED_SQL.toString());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 }
@@ -9,7 +9,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,6 +21,8 @@ import java.util.List;
  * <li>{@link #readFileToList(String)} read file to string list</li>
  * <li>{@link #writeFile(String, String, boolean)} write file</li>
  * <li>{@link #writeFile(String, InputStream)} write file</li>
+ * <li>{@link #writeStream(String, InputStream)} write file and return size of it</li>
+ * <li>{@link #writeStream(String, InputStream, int, boolean)} write file with buffer size and sync policy</li>
  * </ul>
  * <ul>
  * Operate file
@@ -39,7 +41,15 @@ import java.util.List;
  */
 public class FileUtils {
 
-    public final static String FILE_EXTENSION_SEPARATOR = ".";
+    public final static String               FILE_EXTENSION_SEPARATOR = ".";
+
+    /** default buffer size used when copy stream to file **/
+    public static final int                  DEFAULT_BUFFER_SIZE      = 32 * 1024;
+    /** max buffer size kept by each thread, larger buffer will be used once and not reused **/
+    public static final int                  MAX_REUSED_BUFFER_SIZE   = 256 * 1024;
+
+    /** reusable copy buffer of each thread, avoid allocating a new array for every file written **/
+    private static final ThreadLocal<byte[]> BUFFER_POOL              = new ThreadLocal<byte[]>();
 
     /**
      * read file
@@ -118,18 +128,71 @@ public class FileUtils {
      * @param stream
      * @return return true
      * @throws IOException if an error occurs while operator FileWriter
+     * @see #writeStream(String, InputStream)
      */
     public static boolean writeFile(String filePath, InputStream stream) {
-        OutputStream o = null;
+        writeStream(filePath, stream);
+        return true;
+    }
+
+    /**
+     * write stream to file, buffer size is {@link #DEFAULT_BUFFER_SIZE} and not sync to device
+     * 
+     * @param filePath
+     * @param stream
+     * @return bytes count written, that is the size of file
+     * @see #writeStream(String, InputStream, int, boolean)
+     */
+    public static long writeStream(String filePath, InputStream stream) {
+        return writeStream(filePath, stream, DEFAULT_BUFFER_SIZE, false);
+    }
+
+    /**
+     * write stream to file
+     * <ul>
+     * <li>if stream is {@link FileInputStream}, use {@link FileChannel#transferFrom(java.nio.channels.ReadableByteChannel, long, long)}
+     * to copy without buffer</li>
+     * <li>else copy by buffer, buffer is reused in the same thread if its size not greater than
+     * {@link #MAX_REUSED_BUFFER_SIZE}</li>
+     * <li>stream will be closed after write</li>
+     * </ul>
+     * 
+     * @param filePath
+     * @param stream
+     * @param bufferSize buffer size, if less than or equal to 0, use {@link #DEFAULT_BUFFER_SIZE}
+     * @param isSync whether to sync data to device before return, it's slower but data will not lost when power off
+     * @return bytes count written, that is the size of file
+     * @throws IOException if an error occurs while operator FileOutputStream
+     */
+    public static long writeStream(String filePath, InputStream stream, int bufferSize, boolean isSync) {
+        FileOutputStream o = null;
         try {
             o = new FileOutputStream(filePath);
-            byte data[] = new byte[1024];
-            int length = -1;
-            while ((length = stream.read(data)) != -1) {
-                o.write(data, 0, length);
+            long count = 0;
+            if (stream instanceof FileInputStream) {
+                FileChannel in = ((FileInputStream)stream).getChannel();
+                FileChannel out = o.getChannel();
+                long size = in.size() - in.position();
+                while (count < size) {
+                    long transferred = out.transferFrom(in, count, size - count);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    count += transferred;
+                }
+            } else {
+                byte[] data = obtainBuffer(bufferSize <= 0 ? DEFAULT_BUFFER_SIZE : bufferSize);
+                int length = -1;
+                while ((length = stream.read(data)) != -1) {
+                    o.write(data, 0, length);
+                    count += length;
+                }
             }
             o.flush();
-            return true;
+            if (isSync) {
+                o.getFD().sync();
+            }
+            return count;
         } catch (FileNotFoundException e) {
             throw new RuntimeException("FileNotFoundException occurred. ", e);
         } catch (IOException e) {
@@ -146,6 +209,26 @@ public class FileUtils {
         }
     }
 
+    /**
+     * get copy buffer of current thread, the buffer will be reused next time if its size not greater than
+     * {@link #MAX_REUSED_BUFFER_SIZE}
+     * 
+     * @param size min size of buffer
+     * @return
+     */
+    private static byte[] obtainBuffer(int size) {
+        byte[] buffer = BUFFER_POOL.get();
+        if (buffer != null && buffer.length >= size) {
+            return buffer;
+        }
+
+        buffer = new byte[size];
+        if (size <= MAX_REUSED_BUFFER_SIZE) {
+            BUFFER_POOL.set(buffer);
+        }
+        return buffer;
+    }
+
     /**
      * read file to string list, a element of list is a line
      * 
@@ -184,6 +267,51 @@ public class FileUtils {
         }
     }
 
+    /**
+     * read file to bytes
+     * 
+     * @param filePath
+     * @return if file not exist, return null, else return content of file
+     * @throws RuntimeException if an error occurs while reading file or file is larger than 2G
+     */
+    public static byte[] readFileToBytes(String filePath) {
+        File file = new File(filePath);
+        if (!file.isFile()) {
+            return null;
+        }
+        if (file.length() > Integer.MAX_VALUE) {
+            throw new RuntimeException("File is too large: " + filePath);
+        }
+
+        InputStream stream = null;
+        try {
+            stream = new FileInputStream(file);
+            byte[] content = new byte[(int)file.length()];
+            int offset = 0, readCount;
+            while (offset < content.length
+                   && (readCount = stream.read(content, offset, content.length - offset)) != -1) {
+                offset += readCount;
+            }
+            if (offset < content.length) {
+                // file is truncated while reading
+                byte[] truncated = new byte[offset];
+                System.arraycopy(content, 0, truncated, 0, offset);
+                return truncated;
+            }
+            return content;
+        } catch (IOException e) {
+            throw new RuntimeException("IOException occurred. ", e);
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("IOException occurred. ", e);
+                }
+            }
+        }
+    }
+
     /**
      * get file name from path, not include suffix
      * 
@@ -1,19 +1,35 @@
 package cn.trinea.android.common.util;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import cn.trinea.android.common.constant.HttpConstants;
+import cn.trinea.android.common.entity.FormBody;
+import cn.trinea.android.common.entity.HttpBody;
 import cn.trinea.android.common.entity.HttpRequest;
 import cn.trinea.android.common.entity.HttpResponse;
 
@@ -24,6 +40,26 @@ import cn.trinea.android.common.entity.HttpResponse;
  * <li>{@link #httpGet(HttpRequest)}</li>
  * <li>{@link #httpGet(String)}</li>
  * <li>{@link #httpGetString(String)}</li>
+ * <li>{@link #httpGet(HttpRequest, StreamHandler)} consume body as it arrives</li>
+ * <li>{@link #openStream(HttpRequest)} get body stream, connection is reused after stream closed</li>
+ * <li>gzip and deflate are accepted and decoded, see {@link HttpResponse#getWireSize()} and
+ * {@link HttpResponse#getDecodedSize()}</li>
+ * </ul>
+ * <ul>
+ * <strong>Collapse http get</strong>
+ * <li>Concurrent {@link #httpGet(HttpRequest)} of the same url and request properties share one network call, each
+ * caller gets its own copy of the response, see {@link #setCollapseGetEnabled(boolean)}</li>
+ * <li>{@link #getCollapsedCount()} get count of calls collapsed</li>
+ * </ul>
+ * <ul>
+ * <strong>Retry and circuit breaker</strong>
+ * <li>Http get failed for network or server error is retried at most {@link HttpRequest#getRetryCount()} times
+ * after a random delay growing exponentially from {@link #RETRY_BASE_DELAY}</li>
+ * <li>If both connect timeout and read timeout are set, all tries of a request take about no more than their sum,
+ * retry is given up if the rest time is not enough</li>
+ * <li>If circuit breaker is enabled by {@link #setCircuitBreakerEnabled(boolean)}, it's disabled default, after
+ * {@link #CIRCUIT_FAILURE_COUNT} continuous failures of a host, requests to it return null at once in
+ * {@link #CIRCUIT_OPEN_DURATION}, then one request is allowed to try, see {@link #isCircuitOpen(String)}</li>
  * </ul>
  * <ul>
  * <strong>Http post</strong>
@@ -31,6 +67,10 @@ import cn.trinea.android.common.entity.HttpResponse;
  * <li>{@link #httpPost(String)}</li>
  * <li>{@link #httpPostString(String)}</li>
  * <li>{@link #httpPostString(String, Map)}</li>
+ * <li>{@link #httpPost(HttpRequest, StreamHandler)} consume body as it arrives</li>
+ * <li>{@link HttpRequest#setBody(HttpBody)} post {@link FormBody} or multipart body, written to connection in
+ * streaming mode</li>
+ * <li>{@link HttpRequest#setGzipParas(boolean)} compress paras by gzip</li>
  * </ul>
  * <ul>
  * <strong>Http params</strong>
@@ -41,74 +81,152 @@ import cn.trinea.android.common.entity.HttpResponse;
  * <li>{@link #appendParaToUrl(String, String, String)}</li>
  * <li>{@link #parseGmtTime(String)}</li>
  * </ul>
+ * <ul>
+ * <strong>Connection reuse</strong>
+ * <li>Connections are kept alive and reused by the platform connection pool when body is read completely, at most
+ * {@link #MAX_CONNECTIONS_PER_HOST} idle connections of each host are kept for {@link #KEEP_ALIVE_DURATION}</li>
+ * <li>If the rest of body is larger than {@link #MAX_DRAIN_SIZE} when finished or aborted, connection is
+ * disconnected</li>
+ * </ul>
  * 
  * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-5-12
  */
 public class HttpUtils {
 
     /** url and para separator **/
-    public static final String URL_AND_PARA_SEPARATOR = "?";
+    public static final String               URL_AND_PARA_SEPARATOR   = "?";
     /** parameters separator **/
-    public static final String PARAMETERS_SEPARATOR   = "&";
+    public static final String               PARAMETERS_SEPARATOR     = "&";
     /** paths separator **/
-    public static final String PATHS_SEPARATOR        = "/";
+    public static final String               PATHS_SEPARATOR          = "/";
     /** equal sign **/
-    public static final String EQUAL_SIGN             = "=";
+    public static final String               EQUAL_SIGN               = "=";
+
+    /** paras smaller than it will not be compressed even if {@link HttpRequest#isGzipParas()} **/
+    public static final int                  MIN_GZIP_PARAS_SIZE      = 1024;
+
+    /**
+     * max idle connections kept alive of each host, set to system property http.maxConnections if not set before first
+     * http connection
+     **/
+    public static final int                  MAX_CONNECTIONS_PER_HOST = 8;
+    /** time idle connection kept alive, in mills, set to system property http.keepAliveDuration if not set **/
+    public static final long                 KEEP_ALIVE_DURATION      = 2 * 60 * 1000;
+    /** max size of the rest of body read and discard to keep connection alive **/
+    public static final int                  MAX_DRAIN_SIZE           = 16 * 1024;
+    /** max size of body buffer allocated from Content-Length at once, buffer grows as body arrives if larger **/
+    public static final int                  MAX_PRESIZED_BODY_SIZE   = 4 * 1024 * 1024;
+
+    /** max delay before the first retry, in mills, the max delay doubles each retry **/
+    public static final long                 RETRY_BASE_DELAY         = 500;
+    /** max delay before retry, in mills **/
+    public static final long                 RETRY_MAX_DELAY          = 10 * 1000;
+    /** count of continuous failures of a host to open its circuit **/
+    public static final int                  CIRCUIT_FAILURE_COUNT    = 5;
+    /** time requests to a host fail fast after its circuit opened, in mills **/
+    public static final long                 CIRCUIT_OPEN_DURATION    = 15 * 1000;
+
+    private static final String              ACCEPT_ENCODING          = "Accept-Encoding";
+    private static final String              CONTENT_ENCODING         = "Content-Encoding";
+    private static final String              CONTENT_TYPE             = "Content-Type";
+    private static final String              ENCODING_GZIP            = "gzip";
+    private static final String              ENCODING_DEFLATE         = "deflate";
+    /** size of buffer used to read response body when Content-Length is unknown **/
+    private static final int                 DEFAULT_BUFFER_SIZE      = 8 * 1024;
+    /** reusable response body buffer of each thread **/
+    private static final ThreadLocal<byte[]> BUFFER_POOL              = new ThreadLocal<byte[]>();
+    /** count of http get which shared response of another call in flight **/
+    private static final AtomicLong          COLLAPSED_COUNT          = new AtomicLong(0);
+    /** whether concurrent http get of the same request share one network call **/
+    private static volatile boolean          isCollapseGetEnabled     = true;
+    /** whether to fail fast when a host fails continuously **/
+    private static volatile boolean          isCircuitBreakerEnabled  = false;
+
+    static {
+        setPropertyIfAbsent("http.keepAlive", "true");
+        setPropertyIfAbsent("http.maxConnections", Integer.toString(MAX_CONNECTIONS_PER_HOST));
+        setPropertyIfAbsent("http.keepAliveDuration", Long.toString(KEEP_ALIVE_DURATION));
+    }
+
+    /**
+     * open stream of the url by get method, connection will be kept alive for reuse when stream is closed
+     * <ul>
+     * <li>body is not decoded, so Accept-Encoding is not set by default</li>
+     * <li>you need to close stream yourself, the rest of body will be read and discard if not larger than
+     * {@link #MAX_DRAIN_SIZE}, else connection is disconnected</li>
+     * </ul>
+     * 
+     * @param request
+     * @return body stream
+     * @throws IOException if error occurred or response code is error
+     */
+    public static InputStream openStream(HttpRequest request) throws IOException {
+        if (request == null) {
+            throw new IllegalArgumentException("The request can not be null.");
+        }
+
+        HttpURLConnection con = (HttpURLConnection)new URL(request.getUrl()).openConnection();
+        try {
+            setURLConnection(request, con);
+            return new ConnectionInputStream(con, con.getInputStream());
+        } catch (IOException e) {
+            con.disconnect();
+            throw e;
+        } catch (RuntimeException e) {
+            con.disconnect();
+            throw e;
+        }
+    }
 
     /**
      * http get
      * <ul>
      * <li>use gzip compression default</li>
-     * <li>use bufferedReader to improve the reading speed</li>
+     * <li>read body as bytes, buffer is sized from Content-Length but not larger than {@link #MAX_PRESIZED_BODY_SIZE},
+     * see {@link HttpResponse#getResponseBytes()}</li>
+     * <li>if response code is 304, which is the result of conditional request with If-None-Match or
+     * If-Modified-Since, response body is null</li>
+     * <li>if a get of the same url and request properties is in flight, wait for it and return its response rather
+     * than request again, each waiter gets its own copy of the response, see {@link #setCollapseGetEnabled(boolean)}.
+     * Waiting is limited by timeout of the request like request itself, null is returned if it times out</li>
      * </ul>
      * 
      * @param request
      * @return the response of the url, if null represents http error
      */
     public static HttpResponse httpGet(HttpRequest request) {
-        if (request == null) {
-            return null;
+        if (request == null || !isCollapseGetEnabled) {
+            return httpGet(request, null);
         }
 
-        BufferedReader input = null;
-        HttpURLConnection con = null;
+        String key = getCollapseKey(request);
+        InFlightCall call = new InFlightCall();
+        InFlightCall inFlightCall = InFlightCall.CALLS.putIfAbsent(key, call);
+        if (inFlightCall != null) {
+            COLLAPSED_COUNT.incrementAndGet();
+            return inFlightCall.await(getTimeoutBudget(request));
+        }
+
+        HttpResponse response = null;
         try {
-            URL url = new URL(request.getUrl());
-            try {
-                HttpResponse response = new HttpResponse(request.getUrl());
-                // default gzip encode
-                con = (HttpURLConnection)url.openConnection();
-                setURLConnection(request, con);
-                input = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String s;
-                while ((s = input.readLine()) != null) {
-                    sb.append(s).append("\n");
-                }
-                response.setResponseBody(sb.toString());
-                setHttpResponse(con, response);
-                return response;
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        } catch (MalformedURLException e1) {
-            e1.printStackTrace();
+            response = httpGet(request, null);
+            return response;
         } finally {
-            // close buffered
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            // disconnecting releases the resources held by a connection so they may be closed or reused
-            if (con != null) {
-                con.disconnect();
-            }
+            InFlightCall.CALLS.remove(key, call);
+            call.finish(response);
         }
+    }
 
-        return null;
+    /**
+     * http get, body is consumed by handler as it arrives, not kept in response
+     * 
+     * @param request
+     * @param handler consume body stream, if null, read body into response like {@link #httpGet(HttpRequest)}
+     * @return the response of the url without body, if null represents http error or handler throws exception
+     * @see StreamHandler
+     */
+    public static HttpResponse httpGet(HttpRequest request, StreamHandler handler) {
+        return execute(request, false, handler);
     }
 
     /**
@@ -138,63 +256,27 @@ public class HttpUtils {
      * http post
      * <ul>
      * <li>use gzip compression default</li>
-     * <li>use bufferedReader to improve the reading speed</li>
+     * <li>read body as bytes, buffer is sized from Content-Length but not larger than {@link #MAX_PRESIZED_BODY_SIZE},
+     * see {@link HttpResponse#getResponseBytes()}</li>
      * </ul>
      * 
-     * @param httpUrl
-     * @param paras
+     * @param request
      * @return the response of the url, if null represents http error
      */
     public static HttpResponse httpPost(HttpRequest request) {
-        if (request == null) {
-            return null;
-        }
-
-        BufferedReader input = null;
-        HttpURLConnection con = null;
-        try {
-            URL url = new URL(request.getUrl());
-            try {
-                HttpResponse response = new HttpResponse(request.getUrl());
-                // default gzip encode
-                con = (HttpURLConnection)url.openConnection();
-                setURLConnection(request, con);
-                con.setRequestMethod("POST");
-                con.setDoOutput(true);
-                String paras = request.getParas();
-                if (!StringUtils.isEmpty(paras)) {
-                    con.getOutputStream().write(paras.getBytes());
-                }
-                input = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String s;
-                while ((s = input.readLine()) != null) {
-                    sb.append(s).append("\n");
-                }
-                response.setResponseBody(sb.toString());
-                setHttpResponse(con, response);
-                return response;
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        } catch (MalformedURLException e1) {
-            e1.printStackTrace();
-        } finally {
-            // close buffered
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            // disconnecting releases the resources held by a connection so they may be closed or reused
-            if (con != null) {
-                con.disconnect();
-            }
-        }
+        return httpPost(request, null);
+    }
 
-        return null;
+    /**
+     * http post, body is consumed by handler as it arrives, not kept in response
+     * 
+     * @param request
+     * @param handler consume body stream, if null, read body into response like {@link #httpPost(HttpRequest)}
+     * @return the response of the url without body, if null represents http error or handler throws exception
+     * @see StreamHandler
+     */
+    public static HttpResponse httpPost(HttpRequest request, StreamHandler handler) {
+        return execute(request, true, handler);
     }
 
     /**
@@ -347,22 +429,472 @@ public class HttpUtils {
         return sb.append(paraKey).append(EQUAL_SIGN).append(paraValue).toString();
     }
 
-    private static final SimpleDateFormat GMT_FORMAT = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss z",
-                                                                            Locale.ENGLISH);
-
     /**
-     * parse gmt time to long
+     * parse gmt time to long, thread-safe
      * 
-     * @param gmtTime likes Thu, 11 Apr 2013 10:20:30 GMT
+     * @param gmtTime likes Thu, 11 Apr 2013 10:20:30 GMT, RFC 850 and asctime date are also supported
      * @return -1 represents exception otherwise time in milliseconds
+     * @see TimeUtils#parseHttpDate(String)
      */
     public static long parseGmtTime(String gmtTime) {
+        return TimeUtils.parseHttpDate(gmtTime);
+    }
+
+    /**
+     * whether concurrent {@link #httpGet(HttpRequest)} of the same url and request properties share one network call,
+     * default is true
+     * 
+     * @return
+     */
+    public static boolean isCollapseGetEnabled() {
+        return isCollapseGetEnabled;
+    }
+
+    /**
+     * set whether concurrent {@link #httpGet(HttpRequest)} of the same url and request properties share one network
+     * call, default is true
+     * 
+     * @param isCollapseGetEnabled
+     */
+    public static void setCollapseGetEnabled(boolean isCollapseGetEnabled) {
+        HttpUtils.isCollapseGetEnabled = isCollapseGetEnabled;
+    }
+
+    /**
+     * get count of {@link #httpGet(HttpRequest)} which shared response of another call in flight rather than request
+     * again
+     * 
+     * @return
+     */
+    public static long getCollapsedCount() {
+        return COLLAPSED_COUNT.get();
+    }
+
+    /**
+     * get count of {@link #httpGet(HttpRequest)} in flight which can be shared
+     * 
+     * @return
+     */
+    public static int getInFlightCount() {
+        return InFlightCall.CALLS.size();
+    }
+
+    /**
+     * get key of http get, requests of the same url and request properties have the same key
+     * 
+     * @param request
+     * @return
+     */
+    private static String getCollapseKey(HttpRequest request) {
+        StringBuilder key = new StringBuilder("GET ").append(request.getUrl());
+        Map<String, String> requestPropertys = request.getRequestPropertys();
+        if (requestPropertys != null && !requestPropertys.isEmpty()) {
+            // sorted, so the order of setting properties does not matter
+            for (Entry<String, String> entry : new TreeMap<String, String>(requestPropertys).entrySet()) {
+                key.append('\n').append(entry.getKey()).append(':').append(entry.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * whether to fail fast when a host fails continuously, default is false
+     * 
+     * @return
+     */
+    public static boolean isCircuitBreakerEnabled() {
+        return isCircuitBreakerEnabled;
+    }
+
+    /**
+     * set whether to fail fast when a host fails continuously, default is false. It applies to all requests of the
+     * process including post, enable it only if requests can bear returning null at once while a host is failing
+     * 
+     * @param isCircuitBreakerEnabled
+     */
+    public static void setCircuitBreakerEnabled(boolean isCircuitBreakerEnabled) {
+        HttpUtils.isCircuitBreakerEnabled = isCircuitBreakerEnabled;
+    }
+
+    /**
+     * whether requests to the host fail fast now because of continuous failures
+     * 
+     * @param host
+     * @return
+     */
+    public static boolean isCircuitOpen(String host) {
+        HostCircuit circuit = (host == null ? null : HostCircuit.CIRCUITS.get(host));
+        return circuit != null && circuit.isOpen();
+    }
+
+    /**
+     * execute http request, retry if failed for network or server error and retry is allowed
+     * 
+     * @param request
+     * @param isPost whether to use post method, else get
+     * @param handler consume body stream, if null, read body into response
+     * @return the response of the url, if null represents http error
+     */
+    private static HttpResponse execute(HttpRequest request, boolean isPost, StreamHandler handler) {
+        if (request == null) {
+            return null;
+        }
+
+        URL url;
         try {
-            return GMT_FORMAT.parse(gmtTime).getTime();
-        } catch (Exception e) {
+            url = new URL(request.getUrl());
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        HostCircuit circuit = (isCircuitBreakerEnabled ? HostCircuit.get(url.getHost()) : null);
+        // post is not idempotent, and body consumed by handler can not be taken back
+        int retryCount = (isPost || handler != null) ? 0 : request.getRetryCount();
+        long timeoutBudget = getTimeoutBudget(request);
+        long deadline = (timeoutBudget > 0 ? System.currentTimeMillis() + timeoutBudget : -1);
+        for (int retryTimes = 0;; retryTimes++) {
+            if (circuit != null && !circuit.allowRequest()) {
+                return null;
+            }
+
+            long timeoutLimit = (deadline > 0 ? deadline - System.currentTimeMillis() : -1);
+            HttpResponse response = new HttpResponse(request.getUrl());
+            try {
+                executeOnce(request, url, isPost, handler, response, timeoutLimit);
+                if (circuit != null) {
+                    circuit.onSuccess();
+                }
+                return response;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            // response code less than 500 means the host works well, retry will get the same result
+            int responseCode = response.getResponseCode();
+            if (responseCode > 0 && responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                if (circuit != null) {
+                    circuit.onSuccess();
+                }
+                return null;
+            }
+            if (circuit != null) {
+                circuit.onFailure();
+            }
+            if (retryTimes >= retryCount) {
+                return null;
+            }
+
+            long delay = getRetryDelay(retryTimes);
+            if (deadline > 0 && System.currentTimeMillis() + delay >= deadline) {
+                return null;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * execute http request once
+     * 
+     * @param request
+     * @param url
+     * @param isPost whether to use post method, else get
+     * @param handler consume body stream, if null, read body into response
+     * @param response response to fill, response code is set before body read
+     * @param timeoutLimit if greater than 0, connect timeout and read timeout are limited to it
+     * @throws IOException
+     */
+    private static void executeOnce(HttpRequest request, URL url, boolean isPost, StreamHandler handler,
+                                    HttpResponse response, long timeoutLimit) throws IOException {
+        HttpURLConnection con = null;
+        boolean isReusable = false;
+        try {
+            con = (HttpURLConnection)url.openConnection();
+            setURLConnection(request, con);
+            if (timeoutLimit > 0) {
+                int limit = (int)Math.min(timeoutLimit, Integer.MAX_VALUE);
+                con.setConnectTimeout(Math.min(con.getConnectTimeout(), limit));
+                con.setReadTimeout(Math.min(con.getReadTimeout(), limit));
+            }
+            // default gzip encode, body will be decoded by readResponseBody
+            if (con.getRequestProperty(ACCEPT_ENCODING) == null) {
+                con.setRequestProperty(ACCEPT_ENCODING, ENCODING_GZIP + ", " + ENCODING_DEFLATE);
+            }
+            if (isPost) {
+                con.setRequestMethod("POST");
+                con.setDoOutput(true);
+                HttpBody body = getBody(request);
+                if (body != null) {
+                    writeBody(con, body, request.isGzipParas());
+                }
+            }
+            setHttpResponse(con, response);
+            response.setExpiredTime(response.getExpiresInMillis());
+            isReusable = readResponseBody(con, response, handler);
+        } finally {
+            // body read completely, keep connection alive for reuse, else disconnecting releases it
+            if (con != null && !isReusable) {
+                con.disconnect();
+            }
+        }
+    }
+
+    /**
+     * get time all tries of a request can take, it's the sum of connect timeout and read timeout
+     * 
+     * @param request
+     * @return -1 if connect timeout or read timeout is not set, means no limit
+     */
+    private static long getTimeoutBudget(HttpRequest request) {
+        if (request.getConnectTimeout() <= 0 || request.getReadTimeout() <= 0) {
+            return -1;
+        }
+        return (long)request.getConnectTimeout() + request.getReadTimeout();
+    }
+
+    /**
+     * get random delay before retry, full jitter between 0 and exponential backoff, so clients failed at the same
+     * time will not retry at the same time
+     * 
+     * @param retryTimes times retried before
+     * @return
+     */
+    private static long getRetryDelay(int retryTimes) {
+        // avoid shift overflow
+        long maxDelay = (retryTimes >= 16 ? RETRY_MAX_DELAY : RETRY_BASE_DELAY << retryTimes);
+        return (long)(Math.random() * Math.min(maxDelay, RETRY_MAX_DELAY));
+    }
+
+    /**
+     * get body of post, if {@link HttpRequest#getBody()} is null, paras map is written as {@link FormBody}
+     * 
+     * @param request
+     * @return null represents no body
+     */
+    private static HttpBody getBody(HttpRequest request) {
+        if (request.getBody() != null) {
+            return request.getBody();
+        }
+        Map<String, String> parasMap = request.getParasMap();
+        return (parasMap == null || parasMap.isEmpty()) ? null : new FormBody().addAllEncoded(parasMap);
+    }
+
+    /**
+     * write body to output stream of connection
+     * <ul>
+     * <li>If length of body is known, use fixed-length streaming mode, else chunked streaming mode, so body is not
+     * buffered by connection</li>
+     * <li>If isGzip and body is {@link FormBody} and large enough, it's compressed by gzip, Content-Encoding will be
+     * set to gzip</li>
+     * </ul>
+     * 
+     * @param urlConnection
+     * @param body
+     * @param isGzip whether to compress paras by gzip
+     * @throws IOException
+     */
+    private static void writeBody(HttpURLConnection urlConnection, HttpBody body, boolean isGzip) throws IOException {
+        if (urlConnection.getRequestProperty(CONTENT_TYPE) == null && body.getContentType() != null) {
+            urlConnection.setRequestProperty(CONTENT_TYPE, body.getContentType());
+        }
+
+        long length = body.getContentLength();
+        if (isGzip && body instanceof FormBody && length >= MIN_GZIP_PARAS_SIZE) {
+            // length of compressed paras is needed by fixed-length mode, paras is small, so compress to memory
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream((int)(length / 2));
+            GZIPOutputStream gzipOutput = new GZIPOutputStream(compressed);
+            body.writeTo(gzipOutput);
+            gzipOutput.close();
+            urlConnection.setRequestProperty(CONTENT_ENCODING, ENCODING_GZIP);
+            urlConnection.setFixedLengthStreamingMode(compressed.size());
+            OutputStream output = urlConnection.getOutputStream();
+            try {
+                compressed.writeTo(output);
+            } finally {
+                output.close();
+            }
+            return;
+        }
+
+        if (length >= 0 && length <= Integer.MAX_VALUE) {
+            urlConnection.setFixedLengthStreamingMode((int)length);
+        } else {
+            urlConnection.setChunkedStreamingMode(0);
+        }
+        OutputStream output = urlConnection.getOutputStream();
+        try {
+            BufferedOutputStream bufferedOutput = new BufferedOutputStream(output, DEFAULT_BUFFER_SIZE);
+            body.writeTo(bufferedOutput);
+            bufferedOutput.flush();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * read response body, if response code is 304, do nothing
+     * <ul>
+     * <li>body is decoded if Content-Encoding is gzip or deflate</li>
+     * <li>set wire size and decoded size of body to response after read</li>
+     * </ul>
+     * 
+     * @param urlConnection source url connection
+     * @param response response whose code and headers are set
+     * @param handler consume body stream, if null, read body as bytes to response
+     * @throws IOException
+     */
+    private static boolean readResponseBody(HttpURLConnection urlConnection, HttpResponse response,
+                                            StreamHandler handler) throws IOException {
+        // 304 of conditional request has no body
+        if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            urlConnection.getInputStream().close();
+            return true;
+        }
+
+        CountingInputStream wireInput = new CountingInputStream(urlConnection.getInputStream());
+        InputStream decodedInput = getDecodedStream(wireInput, response.getContentEncoding());
+        CountingInputStream input = (decodedInput == wireInput ? wireInput : new CountingInputStream(decodedInput));
+        boolean isReusable = false;
+        try {
+            if (handler != null) {
+                handler.onStream(response, input);
+            } else {
+                // Content-Length is the size of encoded body if encoded
+                int length = (input == wireInput ? urlConnection.getContentLength() : -1);
+                response.setResponseBytes(readBytes(input, length));
+            }
+            isReusable = drain(input) && (input == wireInput || drain(wireInput));
+        } finally {
+            input.close();
+            response.setWireSize(wireInput.getCount());
+            response.setDecodedSize(input.getCount());
+        }
+        return isReusable;
+    }
+
+    /**
+     * read and discard the rest of stream, so the connection can be reused
+     * 
+     * @param input
+     * @return whether read to the end of stream, false if rest is larger than {@link #MAX_DRAIN_SIZE}
+     * @throws IOException
+     */
+    private static boolean drain(InputStream input) throws IOException {
+        byte[] buffer = obtainBuffer();
+        int drainedCount = 0;
+        int readCount;
+        while (drainedCount <= MAX_DRAIN_SIZE) {
+            // buffer may be much larger than drain size, read no more than one byte over it
+            int readLength = Math.min(buffer.length, MAX_DRAIN_SIZE + 1 - drainedCount);
+            if ((readCount = input.read(buffer, 0, readLength)) == -1) {
+                return true;
+            }
+            drainedCount += readCount;
+        }
+        return false;
+    }
+
+    /**
+     * get decoded stream according to content encoding
+     * 
+     * @param input
+     * @param contentEncoding
+     * @return decoded stream, or input itself if content encoding is not gzip or deflate
+     * @throws IOException
+     */
+    private static InputStream getDecodedStream(InputStream input, String contentEncoding) throws IOException {
+        if (StringUtils.isEmpty(contentEncoding)) {
+            return input;
+        }
+
+        contentEncoding = contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+        if (ENCODING_GZIP.equals(contentEncoding) || "x-gzip".equals(contentEncoding)) {
+            return new GZIPInputStream(input, DEFAULT_BUFFER_SIZE);
+        }
+        if (ENCODING_DEFLATE.equals(contentEncoding)) {
+            // deflate should be zlib format, but some servers send raw deflate data, check zlib header
+            BufferedInputStream bufferedInput = new BufferedInputStream(input, DEFAULT_BUFFER_SIZE);
+            bufferedInput.mark(2);
+            int cmf = bufferedInput.read(), flg = bufferedInput.read();
+            bufferedInput.reset();
+            boolean isZlib = cmf != -1 && flg != -1 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+            return new DeflateInputStream(bufferedInput, !isZlib);
+        }
+        return input;
+    }
+
+    /**
+     * read all bytes of input stream
+     * <ul>
+     * <li>if length is known, read into an array of this size, no copy if length is right. Length larger than
+     * {@link #MAX_PRESIZED_BODY_SIZE} is not trusted, array of that size is allocated and grows as body arrives, so a
+     * wrong Content-Length will not cause OutOfMemoryError at once</li>
+     * <li>else read into buffer reused in the same thread, and copy to an array of exact size at last</li>
+     * <li>length is only a hint, it may be size of compressed body, so read until the end of stream always</li>
+     * </ul>
+     * 
+     * @param input
+     * @param length expected length, like Content-Length, less than or equal to 0 means unknown
+     * @return
+     * @throws IOException
+     */
+    private static byte[] readBytes(InputStream input, int length) throws IOException {
+        boolean isPooled = length <= 0;
+        byte[] buffer = isPooled ? obtainBuffer() : new byte[Math.min(length, MAX_PRESIZED_BODY_SIZE)];
+        int count = 0, readCount;
+        while (true) {
+            if (count == buffer.length) {
+                int b = input.read();
+                if (b == -1) {
+                    break;
+                }
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, DEFAULT_BUFFER_SIZE));
+                buffer[count++] = (byte)b;
+                if (isPooled && buffer.length <= FileUtils.MAX_REUSED_BUFFER_SIZE) {
+                    BUFFER_POOL.set(buffer);
+                }
+            }
+            if ((readCount = input.read(buffer, count, buffer.length - count)) == -1) {
+                break;
+            }
+            count += readCount;
+        }
+        return (!isPooled && count == buffer.length) ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * get buffer reused in the same thread
+     * 
+     * @return
+     */
+    private static byte[] obtainBuffer() {
+        byte[] buffer = BUFFER_POOL.get();
+        if (buffer == null) {
+            buffer = new byte[DEFAULT_BUFFER_SIZE];
+            BUFFER_POOL.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * set system property if not set
+     * 
+     * @param key
+     * @param value
+     */
+    private static void setPropertyIfAbsent(String key, String value) {
+        try {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        } catch (SecurityException e) {
             e.printStackTrace();
         }
-        return -1;
     }
 
     /**
@@ -405,5 +937,298 @@ public class HttpUtils {
         }
         response.setResponseHeader(HttpConstants.EXPIRES, urlConnection.getHeaderField("Expires"));
         response.setResponseHeader(HttpConstants.CACHE_CONTROL, urlConnection.getHeaderField("Cache-Control"));
+        response.setResponseHeader(HttpConstants.CONTENT_ENCODING, urlConnection.getHeaderField("Content-Encoding"));
+        response.setResponseHeader(HttpConstants.CONTENT_TYPE, urlConnection.getHeaderField("Content-Type"));
+        response.setResponseHeader(HttpConstants.ETAG, urlConnection.getHeaderField("ETag"));
+        response.setResponseHeader(HttpConstants.LAST_MODIFIED, urlConnection.getHeaderField("Last-Modified"));
+        response.setResponseHeader(HttpConstants.DATE, urlConnection.getHeaderField("Date"));
+        response.setResponseHeader(HttpConstants.AGE, urlConnection.getHeaderField("Age"));
+    }
+
+    /**
+     * handler to consume response body stream as it arrives
+     * <ul>
+     * <li>Body is read only when handler reads the stream, so handler reading slowly makes server sending slowly</li>
+     * <li>Return from {@link #onStream(HttpResponse, InputStream)} before the end of stream to abort, the rest of body
+     * will not be read</li>
+     * <li>{@link ChunkHandler} consume body chunk by chunk</li>
+     * </ul>
+     * 
+     * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-18
+     */
+    public interface StreamHandler {
+
+        /**
+         * consume response body, run on the thread of http request
+         * 
+         * @param response response whose code and headers are set, body is null
+         * @param input body stream, will be closed after return
+         * @throws IOException
+         */
+        public void onStream(HttpResponse response, InputStream input) throws IOException;
+    }
+
+    /**
+     * handler to consume response body chunk by chunk, buffer is reused, so do not keep it after
+     * {@link #onChunk(byte[], int)} return
+     * 
+     * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-18
+     */
+    public static abstract class ChunkHandler implements StreamHandler {
+
+        /** default max size of a chunk **/
+        public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+        private final int       chunkSize;
+
+        public ChunkHandler(){
+            this(DEFAULT_CHUNK_SIZE);
+        }
+
+        /**
+         * @param chunkSize max size of a chunk
+         */
+        public ChunkHandler(int chunkSize){
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("The chunkSize must be greater than 0.");
+            }
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public void onStream(HttpResponse response, InputStream input) throws IOException {
+            byte[] buffer = new byte[chunkSize];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                if (!onChunk(buffer, length)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * consume a chunk of body
+         * 
+         * @param buffer chunk data, reused by next chunk
+         * @param length length of chunk data in buffer
+         * @return whether to continue, false to abort
+         * @throws IOException
+         */
+        public abstract boolean onChunk(byte[] buffer, int length) throws IOException;
+    }
+
+    /**
+     * input stream which counts bytes read
+     * 
+     * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-18
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        public CountingInputStream(InputStream in){
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int readCount = in.read(buffer, offset, length);
+            if (readCount > 0) {
+                count += readCount;
+            }
+            return readCount;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipCount = in.skip(n);
+            count += skipCount;
+            return skipCount;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * input stream of connection, drain and close it to keep connection alive for reuse when closed, disconnect if
+     * rest of it is too large
+     * 
+     * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-20
+     */
+    private static class ConnectionInputStream extends FilterInputStream {
+
+        private HttpURLConnection urlConnection;
+        private boolean           isClosed = false;
+
+        public ConnectionInputStream(HttpURLConnection urlConnection, InputStream in){
+            super(in);
+            this.urlConnection = urlConnection;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+            boolean isReusable = false;
+            try {
+                isReusable = drain(in);
+            } finally {
+                try {
+                    in.close();
+                } finally {
+                    if (!isReusable) {
+                        urlConnection.disconnect();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * input stream of deflate body, native memory of its inflater is released when closed rather than when it's
+     * garbage collected
+     */
+    private static class DeflateInputStream extends InflaterInputStream {
+
+        public DeflateInputStream(InputStream in, boolean isRawDeflate){
+            super(in, new Inflater(isRawDeflate), DEFAULT_BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+
+    /**
+     * circuit breaker of a host
+     * <ul>
+     * <li>Closed: requests are allowed, it opens after {@link HttpUtils#CIRCUIT_FAILURE_COUNT} continuous
+     * failures</li>
+     * <li>Open: requests fail fast in {@link HttpUtils#CIRCUIT_OPEN_DURATION}</li>
+     * <li>Half open: one request is allowed to try after open duration, others still fail fast. It closes if the try
+     * succeeds, opens again if fails</li>
+     * </ul>
+     */
+    private static class HostCircuit {
+
+        /** circuit of each host, key is host **/
+        static final ConcurrentMap<String, HostCircuit> CIRCUITS      = new ConcurrentHashMap<String, HostCircuit>();
+
+        private int                                     failureCount;
+        /** requests fail fast until this time **/
+        private long                                    openUntilTime;
+
+        /**
+         * get circuit of the host, create if not exist
+         * 
+         * @param host
+         * @return
+         */
+        static HostCircuit get(String host) {
+            if (host == null) {
+                return null;
+            }
+            HostCircuit circuit = CIRCUITS.get(host);
+            if (circuit == null) {
+                HostCircuit newCircuit = new HostCircuit();
+                circuit = CIRCUITS.putIfAbsent(host, newCircuit);
+                if (circuit == null) {
+                    circuit = newCircuit;
+                }
+            }
+            return circuit;
+        }
+
+        public synchronized boolean allowRequest() {
+            if (failureCount < CIRCUIT_FAILURE_COUNT) {
+                return true;
+            }
+
+            long currentTime = System.currentTimeMillis();
+            if (currentTime < openUntilTime) {
+                return false;
+            }
+            // half open, let this request try and others wait for its result, or another duration if no result
+            openUntilTime = currentTime + CIRCUIT_OPEN_DURATION;
+            return true;
+        }
+
+        public synchronized boolean isOpen() {
+            return failureCount >= CIRCUIT_FAILURE_COUNT && System.currentTimeMillis() < openUntilTime;
+        }
+
+        public synchronized void onSuccess() {
+            failureCount = 0;
+            openUntilTime = 0;
+        }
+
+        public synchronized void onFailure() {
+            if (++failureCount >= CIRCUIT_FAILURE_COUNT) {
+                openUntilTime = System.currentTimeMillis() + CIRCUIT_OPEN_DURATION;
+            }
+        }
+    }
+
+    /**
+     * http get in flight, other callers of the same request wait for its response
+     */
+    private static class InFlightCall {
+
+        /** http get in flight, key is {@link HttpUtils#getCollapseKey(HttpRequest)} **/
+        static final ConcurrentHashMap<String, InFlightCall> CALLS     = new ConcurrentHashMap<String, InFlightCall>();
+
+        private final CountDownLatch                         doneLatch = new CountDownLatch(1);
+        private volatile HttpResponse                        response;
+
+        public void finish(HttpResponse response) {
+            this.response = response;
+            doneLatch.countDown();
+        }
+
+        /**
+         * wait until finished
+         * 
+         * @param timeoutMillis max time to wait, less than or equal to 0 means no limit
+         * @return copy of response of the call, null if http error, timed out or interrupted
+         */
+        public HttpResponse await(long timeoutMillis) {
+            try {
+                if (timeoutMillis <= 0) {
+                    doneLatch.await();
+                } else if (!doneLatch.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            // copy for each waiter, so that one modifying it, like HttpCache, will not affect others
+            HttpResponse result = response;
+            return (result == null ? null : new HttpResponse(result));
+        }
     }
 }
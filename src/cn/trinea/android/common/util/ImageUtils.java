@@ -3,15 +3,14 @@ package cn.trinea.android.common.util;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.URL;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import cn.trinea.android.common.entity.HttpRequest;
 
 /**
  * ImageUtils
@@ -108,6 +107,10 @@ public class ImageUtils {
 
     /**
      * get input stream from network by imageurl, you need to close inputStream yourself
+     * <ul>
+     * <li>connection will be kept alive for reuse after inputStream closed, see
+     * {@link HttpUtils#openStream(HttpRequest)}</li>
+     * </ul>
      * 
      * @param imageUrl
      * @param readTimeOutMillis read time out, if less than 0, not set, in mills
@@ -116,22 +119,17 @@ public class ImageUtils {
      * @throws IOException
      */
     public static InputStream getInputStreamFromUrl(String imageUrl, int readTimeOutMillis) {
-        InputStream stream = null;
+        HttpRequest request = new HttpRequest(imageUrl);
+        if (readTimeOutMillis > 0) {
+            request.setReadTimeout(readTimeOutMillis);
+        }
         try {
-            URL url = new URL(imageUrl);
-            HttpURLConnection con = (HttpURLConnection)url.openConnection();
-            if (readTimeOutMillis > 0) {
-                con.setReadTimeout(readTimeOutMillis);
-            }
-            stream = con.getInputStream();
+            return HttpUtils.openStream(request);
         } catch (MalformedURLException e) {
-            closeInputStream(stream);
             throw new RuntimeException("MalformedURLException occurred. ", e);
         } catch (IOException e) {
-            closeInputStream(stream);
             throw new RuntimeException("IOException occurred. ", e);
         }
-        return stream;
     }
 
     /**
@@ -0,0 +1,195 @@
+package cn.trinea.android.common.util;
+
+import java.io.Serializable;
+
+/**
+ * <strong>IntArrayList</strong><br/>
+ * <br/>
+ * List of int without boxing, elements are stored in a contiguous int array which grows when full.<br/>
+ * <ul>
+ * <strong>Usage</strong>
+ * <li>{@link #add(int)}, {@link #add(int, int)} and {@link #addAll(int[])}</li>
+ * <li>{@link #get(int)}, {@link #set(int, int)} and {@link #removeAt(int)}</li>
+ * <li>{@link #indexOf(int)} and {@link #contains(int)}</li>
+ * <li>{@link #toArray()} copy elements to a new array</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Not thread-safe</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-30
+ */
+public class IntArrayList implements Serializable {
+
+    private static final long serialVersionUID         = 1L;
+
+    public static final int   DEFAULT_INITIAL_CAPACITY = 10;
+
+    private int[]             elements;
+    private int               size;
+
+    /**
+     * initial capacity is {@link #DEFAULT_INITIAL_CAPACITY}
+     */
+    public IntArrayList(){
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity
+     */
+    public IntArrayList(int initialCapacity){
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("The initialCapacity can not be less than 0.");
+        }
+        elements = new int[initialCapacity];
+    }
+
+    /**
+     * @param source elements are copied
+     */
+    public IntArrayList(int[] source){
+        elements = source.clone();
+        size = source.length;
+    }
+
+    public void add(int value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * insert value at index, elements from index are shifted right
+     * 
+     * @param index
+     * @param value
+     */
+    public void add(int index, int value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+    }
+
+    public void addAll(int[] values) {
+        ensureCapacity(size + values.length);
+        System.arraycopy(values, 0, elements, size, values.length);
+        size += values.length;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * @param index
+     * @param value
+     * @return previous value at index
+     */
+    public int set(int index, int value) {
+        checkIndex(index);
+        int previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    /**
+     * remove value at index, elements after index are shifted left
+     * 
+     * @param index
+     * @return value removed
+     */
+    public int removeAt(int index) {
+        checkIndex(index);
+        int previous = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return previous;
+    }
+
+    /**
+     * @param value
+     * @return index of the first one equals to value, -1 if not exist
+     */
+    public int indexOf(int value) {
+        for (int i = 0; i < size; i++) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * remove all elements, capacity is kept
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * ensure list can hold minCapacity elements without grow
+     * 
+     * @param minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * @return new array of elements
+     */
+    public int[] toArray() {
+        int[] result = new int[size];
+        System.arraycopy(elements, 0, result, 0, size);
+        return result;
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = elements.length + (elements.length >> 1) + 1;
+        int[] newElements = new int[Math.max(newCapacity, minCapacity)];
+        System.arraycopy(elements, 0, newElements, 0, size);
+        elements = newElements;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
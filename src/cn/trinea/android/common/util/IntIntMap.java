@@ -0,0 +1,306 @@
+package cn.trinea.android.common.util;
+
+import java.io.Serializable;
+
+/**
+ * <strong>IntIntMap</strong><br/>
+ * <br/>
+ * Map from int to int without boxing, keys and values are stored in arrays by open addressing with linear
+ * probing.<br/>
+ * <ul>
+ * <strong>Usage</strong>
+ * <li>{@link #put(int, int)}, {@link #get(int, int)}, {@link #containsKey(int)} and {@link #remove(int)}</li>
+ * <li>{@link #addTo(int, int)} add delta to value, likes counter</li>
+ * <li>{@link #forEach(EntryVisitor)} visit all entries, {@link #keys()} get all keys</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Not thread-safe</li>
+ * <li>Entries should not be put or removed in {@link #forEach(EntryVisitor)}</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-30
+ */
+public class IntIntMap implements Serializable {
+
+    private static final long serialVersionUID      = 1L;
+
+    public static final int   DEFAULT_EXPECTED_SIZE = 16;
+    private static final int  MAX_CAPACITY          = 1 << 30;
+
+    /** key of empty slot, key 0 itself is stored out of arrays **/
+    private static final int  EMPTY_KEY             = 0;
+
+    private int[]             keys;
+    private int[]             values;
+    /** capacity - 1 **/
+    private int               mask;
+    /** count of entries in arrays **/
+    private int               assigned;
+    /** size to resize, 3/4 of capacity **/
+    private int               resizeAt;
+
+    private boolean           hasZeroKey;
+    private int               zeroValue;
+
+    /**
+     * expected size is {@link #DEFAULT_EXPECTED_SIZE}
+     */
+    public IntIntMap(){
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize count of entries can be put without resize
+     */
+    public IntIntMap(int expectedSize){
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("The expectedSize can not be less than 0.");
+        }
+        allocate(LongObjectMap.capacityFor(expectedSize));
+    }
+
+    /**
+     * get value of key
+     * 
+     * @param key
+     * @param defaultValue
+     * @return defaultValue if not exist
+     */
+    public int get(int key, int defaultValue) {
+        if (key == EMPTY_KEY) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    public boolean containsKey(int key) {
+        return key == EMPTY_KEY ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * put value of key
+     * 
+     * @param key
+     * @param value
+     */
+    public void put(int key, int value) {
+        if (key == EMPTY_KEY) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+
+        int index = slotOf(key);
+        if (keys[index] == key) {
+            values[index] = value;
+        } else {
+            insert(index, key, value);
+        }
+    }
+
+    /**
+     * add delta to value of key, if not exist, put delta
+     * 
+     * @param key
+     * @param delta
+     * @return value after added
+     */
+    public int addTo(int key, int delta) {
+        if (key == EMPTY_KEY) {
+            zeroValue = hasZeroKey ? zeroValue + delta : delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+
+        int index = slotOf(key);
+        if (keys[index] == key) {
+            return values[index] += delta;
+        }
+        insert(index, key, delta);
+        return delta;
+    }
+
+    /**
+     * remove key
+     * 
+     * @param key
+     * @return whether key exists
+     */
+    public boolean remove(int key) {
+        if (key == EMPTY_KEY) {
+            boolean exist = hasZeroKey;
+            hasZeroKey = false;
+            zeroValue = 0;
+            return exist;
+        }
+
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        shiftConflictingKeys(index);
+        assigned--;
+        return true;
+    }
+
+    public int size() {
+        return assigned + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = EMPTY_KEY;
+        }
+        assigned = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+    }
+
+    /**
+     * get all keys, in no particular order
+     * 
+     * @return new array
+     */
+    public int[] keys() {
+        int[] result = new int[size()];
+        int count = 0;
+        if (hasZeroKey) {
+            result[count++] = EMPTY_KEY;
+        }
+        for (int k : keys) {
+            if (k != EMPTY_KEY) {
+                result[count++] = k;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * visit all entries, in no particular order
+     * 
+     * @param visitor
+     */
+    public void forEach(EntryVisitor visitor) {
+        if (hasZeroKey && !visitor.visit(EMPTY_KEY, zeroValue)) {
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY && !visitor.visit(keys[i], values[i])) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param key not {@link #EMPTY_KEY}
+     * @return index in arrays, -1 if not exist
+     */
+    private int indexOf(int key) {
+        int index = slotOf(key);
+        return keys[index] == key ? index : -1;
+    }
+
+    /**
+     * @param key not {@link #EMPTY_KEY}
+     * @return index of key if exist, else index of empty slot it should be put
+     */
+    private int slotOf(int key) {
+        int mask = this.mask;
+        int i = hash(key) & mask;
+        int k;
+        while ((k = keys[i]) != EMPTY_KEY && k != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void insert(int index, int key, int value) {
+        keys[index] = key;
+        values[index] = value;
+        if (++assigned >= resizeAt) {
+            resize(keys.length << 1);
+        }
+    }
+
+    /**
+     * remove entry at index, and shift keys after it in the same probe sequence back, so no tombstone is needed
+     * 
+     * @param gapIndex
+     */
+    private void shiftConflictingKeys(int gapIndex) {
+        int mask = this.mask;
+        int distance = 0;
+        while (true) {
+            int index = (gapIndex + (++distance)) & mask;
+            int k = keys[index];
+            if (k == EMPTY_KEY) {
+                break;
+            }
+            // distance from its ideal slot is not less than distance from gap, so it can be moved to gap
+            int idealIndex = hash(k) & mask;
+            if (((index - idealIndex) & mask) >= distance) {
+                keys[gapIndex] = k;
+                values[gapIndex] = values[index];
+                gapIndex = index;
+                distance = 0;
+            }
+        }
+        keys[gapIndex] = EMPTY_KEY;
+    }
+
+    private void resize(int newCapacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        int mask = this.mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int k = oldKeys[j];
+            if (k != EMPTY_KEY) {
+                int i = hash(k) & mask;
+                while (keys[i] != EMPTY_KEY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Map is too large.");
+        }
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity == MAX_CAPACITY ? capacity - 1 : capacity - (capacity >> 2);
+    }
+
+    /**
+     * spread bits of key, so keys in sequence are not in adjacent slots
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * visitor of entries
+     */
+    public interface EntryVisitor {
+
+        /**
+         * @param key
+         * @param value
+         * @return whether to continue visiting
+         */
+        public boolean visit(int key, int value);
+    }
+}
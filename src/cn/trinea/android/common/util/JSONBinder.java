@@ -0,0 +1,724 @@
+package cn.trinea.android.common.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONException;
+
+/**
+ * <strong>JSON Binder</strong><br/>
+ * <br/>
+ * Bind json to java object in one pass by {@link JSONReader}, without building {@link org.json.JSONObject} tree.<br/>
+ * <ul>
+ * <strong>Bind</strong>
+ * <li>{@link #fromJson(String, Class)} bind json object to object of class</li>
+ * <li>{@link #fromJsonArray(String, Class)} bind json array to list of class</li>
+ * <li>{@link #read(JSONReader, Class)} and {@link #readList(JSONReader, Class)} bind next value of reader</li>
+ * </ul>
+ * <ul>
+ * <strong>Rules</strong>
+ * <li>Fields of class and its super classes are bound by field name, or by {@link Key} if annotated. Static and
+ * transient fields are ignored, keys without field are skipped</li>
+ * <li>Field can be primitive and its wrapper, String, enum, array, Collection, Map with String key, Object and class
+ * follows these rules. Primitive field is set without boxing</li>
+ * <li>Collection interface is bound to ArrayList, HashSet, TreeSet or LinkedList, Map interface is bound to HashMap
+ * or TreeMap, concrete Collection and Map class is bound to itself</li>
+ * <li>Field of other interface or abstract class, like CharSequence, or Collection and Map of them, is ignored</li>
+ * <li>Object field is bound to Map&lt;String, Object&gt;, List&lt;Object&gt;, String, Long, Double or Boolean
+ * according to json</li>
+ * <li>Json null is bound to null, primitive field keeps its default value</li>
+ * <li>Fields and constructor of class are found by reflection only once and cached</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Class should have a constructor without parameters, it can be private</li>
+ * </ul>
+ * 
+ * <pre>
+ * public class User {
+ * 
+ *     private long   id;
+ *     &#064;JSONBinder.Key(&quot;user_name&quot;)
+ *     private String name;
+ * }
+ * 
+ * List&lt;User&gt; userList = JSONBinder.fromJsonArray(jsonData, User.class);
+ * </pre>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-28
+ */
+public class JSONBinder {
+
+    static final int KIND_BOOLEAN     = 1;
+    static final int KIND_INT         = 2;
+    static final int KIND_LONG        = 3;
+    static final int KIND_DOUBLE      = 4;
+    static final int KIND_FLOAT       = 5;
+    static final int KIND_SHORT       = 6;
+    static final int KIND_BYTE        = 7;
+    static final int KIND_CHAR        = 8;
+    static final int KIND_STRING      = 9;
+    static final int KIND_ENUM        = 10;
+    static final int KIND_COLLECTION  = 11;
+    static final int KIND_ARRAY       = 12;
+    static final int KIND_MAP         = 13;
+    static final int KIND_OBJECT      = 14;
+    /** Object, bound according to json **/
+    static final int KIND_ANY         = 15;
+    /** interface or abstract class can not be instantiated **/
+    static final int KIND_UNSUPPORTED = 16;
+
+    /**
+     * key of field in json, default is field name
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    public @interface Key {
+
+        String value();
+    }
+
+    /**
+     * bind json to object of class
+     * 
+     * @param jsonData
+     * @param clazz
+     * @return <ul>
+     * <li>if jsonData is null or empty, return null</li>
+     * <li>if jsonData is malformed or does not match clazz, return null</li>
+     * </ul>
+     */
+    public static <T> T fromJson(String jsonData, Class<T> clazz) {
+        if (StringUtils.isEmpty(jsonData)) {
+            return null;
+        }
+
+        try {
+            return read(new JSONReader(jsonData), clazz);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * bind json array to list of class
+     * 
+     * @param jsonData
+     * @param clazz class of element
+     * @return <ul>
+     * <li>if jsonData is null or empty, return null</li>
+     * <li>if jsonData is malformed or does not match clazz, return null</li>
+     * </ul>
+     */
+    public static <T> List<T> fromJsonArray(String jsonData, Class<T> clazz) {
+        if (StringUtils.isEmpty(jsonData)) {
+            return null;
+        }
+
+        try {
+            return readList(new JSONReader(jsonData), clazz);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * bind next value of reader to object of class
+     * 
+     * @param reader
+     * @param clazz should not be primitive class
+     * @return null if next value is json null
+     * @throws JSONException if json is malformed or does not match clazz
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T read(JSONReader reader, Class<T> clazz) throws JSONException {
+        return (T)readValue(reader, TypeInfo.of(clazz));
+    }
+
+    /**
+     * bind next json array of reader to list of class, elements are read one by one
+     * 
+     * @param reader
+     * @param clazz class of element
+     * @return null if next value is json null
+     * @throws JSONException if json is malformed or does not match clazz
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> readList(JSONReader reader, Class<T> clazz) throws JSONException {
+        if (reader.peek() == JSONReader.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return (List<T>)readList(reader, TypeInfo.of(clazz));
+    }
+
+    static Object readValue(JSONReader reader, TypeInfo type) throws JSONException {
+        if (reader.peek() == JSONReader.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        switch (type.kind) {
+            case KIND_BOOLEAN:
+                return readBoolean(reader);
+            case KIND_INT:
+                return reader.nextInt();
+            case KIND_LONG:
+                return reader.nextLong();
+            case KIND_DOUBLE:
+                return reader.nextDouble();
+            case KIND_FLOAT:
+                return (float)reader.nextDouble();
+            case KIND_SHORT:
+                return (short)reader.nextInt();
+            case KIND_BYTE:
+                return (byte)reader.nextInt();
+            case KIND_CHAR:
+                return readChar(reader);
+            case KIND_STRING:
+                return readString(reader);
+            case KIND_ENUM:
+                return readEnum(reader, type.clazz);
+            case KIND_COLLECTION:
+                return readCollection(reader, type);
+            case KIND_ARRAY:
+                return readArray(reader, type.element);
+            case KIND_MAP:
+                return readMap(reader, type);
+            case KIND_OBJECT:
+                return readObject(reader, ClassBinding.get(type.clazz));
+            case KIND_UNSUPPORTED:
+                throw new JSONException("Unsupported type " + type.clazz.getName());
+            default:
+                return readAny(reader);
+        }
+    }
+
+    private static Object readObject(JSONReader reader, ClassBinding binding) throws JSONException {
+        Object object = binding.newInstance();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            FieldBinding field = binding.fieldMap.get(reader.nextName());
+            if (field == null) {
+                reader.skipValue();
+            } else {
+                readField(reader, object, field);
+            }
+        }
+        reader.endObject();
+        return object;
+    }
+
+    /**
+     * read next value of reader to field of object, primitive field is set without boxing
+     * 
+     * @param reader
+     * @param object
+     * @param fieldBinding
+     * @throws JSONException
+     */
+    private static void readField(JSONReader reader, Object object, FieldBinding fieldBinding) throws JSONException {
+        Field field = fieldBinding.field;
+        TypeInfo type = fieldBinding.type;
+        try {
+            if (!type.isPrimitive) {
+                field.set(object, readValue(reader, type));
+                return;
+            }
+            if (reader.peek() == JSONReader.NULL) {
+                reader.nextNull();
+                return;
+            }
+
+            switch (type.kind) {
+                case KIND_BOOLEAN:
+                    field.setBoolean(object, readBoolean(reader));
+                    break;
+                case KIND_INT:
+                    field.setInt(object, reader.nextInt());
+                    break;
+                case KIND_LONG:
+                    field.setLong(object, reader.nextLong());
+                    break;
+                case KIND_DOUBLE:
+                    field.setDouble(object, reader.nextDouble());
+                    break;
+                case KIND_FLOAT:
+                    field.setFloat(object, (float)reader.nextDouble());
+                    break;
+                case KIND_SHORT:
+                    field.setShort(object, (short)reader.nextInt());
+                    break;
+                case KIND_BYTE:
+                    field.setByte(object, (byte)reader.nextInt());
+                    break;
+                default:
+                    field.setChar(object, readChar(reader));
+                    break;
+            }
+        } catch (IllegalAccessException e) {
+            throw new JSONException("Set field " + fieldBinding.name + " fail: " + e.getMessage());
+        }
+    }
+
+    private static List<Object> readList(JSONReader reader, TypeInfo elementType) throws JSONException {
+        List<Object> list = new ArrayList<Object>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(readValue(reader, elementType));
+        }
+        reader.endArray();
+        return list;
+    }
+
+    /**
+     * read json array to array, primitive elements are set without boxing
+     * 
+     * @param reader
+     * @param elementType
+     * @return
+     * @throws JSONException
+     */
+    private static Object readArray(JSONReader reader, TypeInfo elementType) throws JSONException {
+        if (!elementType.isPrimitive) {
+            List<Object> list = readList(reader, elementType);
+            return list.toArray((Object[])Array.newInstance(elementType.clazz, list.size()));
+        }
+
+        Object array = Array.newInstance(elementType.clazz, 16);
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == Array.getLength(array)) {
+                Object newArray = Array.newInstance(elementType.clazz, size * 2);
+                System.arraycopy(array, 0, newArray, 0, size);
+                array = newArray;
+            }
+            if (reader.peek() == JSONReader.NULL) {
+                reader.nextNull();
+                size++;
+                continue;
+            }
+
+            switch (elementType.kind) {
+                case KIND_BOOLEAN:
+                    Array.setBoolean(array, size++, readBoolean(reader));
+                    break;
+                case KIND_INT:
+                    Array.setInt(array, size++, reader.nextInt());
+                    break;
+                case KIND_LONG:
+                    Array.setLong(array, size++, reader.nextLong());
+                    break;
+                case KIND_DOUBLE:
+                    Array.setDouble(array, size++, reader.nextDouble());
+                    break;
+                case KIND_FLOAT:
+                    Array.setFloat(array, size++, (float)reader.nextDouble());
+                    break;
+                case KIND_SHORT:
+                    Array.setShort(array, size++, (short)reader.nextInt());
+                    break;
+                case KIND_BYTE:
+                    Array.setByte(array, size++, (byte)reader.nextInt());
+                    break;
+                default:
+                    Array.setChar(array, size++, readChar(reader));
+                    break;
+            }
+        }
+        reader.endArray();
+
+        Object result = Array.newInstance(elementType.clazz, size);
+        System.arraycopy(array, 0, result, 0, size);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> readCollection(JSONReader reader, TypeInfo type) throws JSONException {
+        if (type.constructor == null) {
+            return readList(reader, type.element);
+        }
+
+        Collection<Object> collection = (Collection<Object>)type.newInstance();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Object element = readValue(reader, type.element);
+            try {
+                collection.add(element);
+            } catch (RuntimeException e) {
+                // like null or element not comparable added to TreeSet
+                throw new JSONException("Add element to " + type.clazz.getName() + " fail: " + e.getMessage());
+            }
+        }
+        reader.endArray();
+        return collection;
+    }
+
+    private static Map<String, Object> readMap(JSONReader reader, TypeInfo type) throws JSONException {
+        Map<String, Object> map = newMap(type);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            map.put(reader.nextName(), readValue(reader, type.element));
+        }
+        reader.endObject();
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> newMap(TypeInfo type) throws JSONException {
+        return type.constructor == null ? new HashMap<String, Object>() : (Map<String, Object>)type.newInstance();
+    }
+
+    /**
+     * read next value according to json
+     * 
+     * @param reader
+     * @return Map&lt;String, Object&gt;, List&lt;Object&gt;, String, Long, Double, Boolean or null
+     * @throws JSONException
+     */
+    private static Object readAny(JSONReader reader) throws JSONException {
+        switch (reader.peek()) {
+            case JSONReader.BEGIN_OBJECT:
+                return readMap(reader, TypeInfo.ANY_MAP);
+            case JSONReader.BEGIN_ARRAY:
+                return readList(reader, TypeInfo.ANY);
+            case JSONReader.STRING:
+                return reader.nextString();
+            case JSONReader.NUMBER:
+                String number = reader.nextString();
+                if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                    try {
+                        return Long.parseLong(number);
+                    } catch (NumberFormatException e) {
+                        // out of range of long, parse as double
+                    }
+                }
+                return Double.parseDouble(number);
+            case JSONReader.BOOLEAN:
+                return reader.nextBoolean();
+            case JSONReader.NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new JSONException("Expected value but was token " + reader.peek());
+        }
+    }
+
+    /**
+     * read string, number or boolean as string, object or array as its json text
+     */
+    private static String readString(JSONReader reader) throws JSONException {
+        switch (reader.peek()) {
+            case JSONReader.BOOLEAN:
+                return Boolean.toString(reader.nextBoolean());
+            case JSONReader.BEGIN_OBJECT:
+            case JSONReader.BEGIN_ARRAY:
+                return reader.nextRawValue();
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /**
+     * read boolean, string "true" ignore case is also true like {@link org.json.JSONObject#getBoolean(String)}
+     */
+    private static boolean readBoolean(JSONReader reader) throws JSONException {
+        if (reader.peek() == JSONReader.STRING) {
+            String value = reader.nextString();
+            if ("true".equalsIgnoreCase(value)) {
+                return true;
+            } else if ("false".equalsIgnoreCase(value)) {
+                return false;
+            }
+            throw new JSONException("Expected boolean but was " + value);
+        }
+        return reader.nextBoolean();
+    }
+
+    private static char readChar(JSONReader reader) throws JSONException {
+        String value = reader.nextString();
+        if (value.length() != 1) {
+            throw new JSONException("Expected char but was " + value);
+        }
+        return value.charAt(0);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(JSONReader reader, Class<?> clazz) throws JSONException {
+        String value = reader.nextString();
+        try {
+            return Enum.valueOf((Class<Enum>)clazz, value);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException("No enum constant " + clazz.getName() + "." + value);
+        }
+    }
+
+    /**
+     * type of value, generic type is resolved once when creating
+     */
+    static class TypeInfo {
+
+        static final TypeInfo ANY     = new TypeInfo(KIND_ANY, Object.class, null);
+        static final TypeInfo ANY_MAP = new TypeInfo(KIND_MAP, Map.class, ANY);
+
+        final int             kind;
+        final Class<?>        clazz;
+        final boolean         isPrimitive;
+        /** type of element for array and Collection, type of value for Map **/
+        final TypeInfo        element;
+        /** whether this type and its element can be bound **/
+        final boolean         isSupported;
+        /** constructor of Collection and Map, null for ArrayList and HashMap which are created directly **/
+        final Constructor<?>  constructor;
+
+        TypeInfo(int kind, Class<?> clazz, TypeInfo element){
+            this(kind, clazz, element, null);
+        }
+
+        /**
+         * @param kind
+         * @param clazz
+         * @param element
+         * @param implClass class to instantiate for Collection and Map, null for ArrayList and HashMap
+         */
+        TypeInfo(int kind, Class<?> clazz, TypeInfo element, Class<?> implClass){
+            this.kind = kind;
+            this.clazz = clazz;
+            this.isPrimitive = clazz.isPrimitive();
+            this.element = element;
+            this.isSupported = kind != KIND_UNSUPPORTED && (element == null || element.isSupported);
+            this.constructor = (implClass == null ? null : getConstructor(implClass));
+        }
+
+        Object newInstance() throws JSONException {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new JSONException("Instantiate " + clazz.getName() + " fail: " + e.getMessage());
+            }
+        }
+
+        /**
+         * @param clazz
+         * @return constructor without parameters, null if not exist
+         */
+        static Constructor<?> getConstructor(Class<?> clazz) {
+            try {
+                Constructor<?> constructor = clazz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        static TypeInfo of(Type type) {
+            if (type instanceof Class) {
+                return of((Class<?>)type, null);
+            } else if (type instanceof ParameterizedType) {
+                Type[] arguments = ((ParameterizedType)type).getActualTypeArguments();
+                return of((Class<?>)((ParameterizedType)type).getRawType(), arguments);
+            } else if (type instanceof GenericArrayType) {
+                TypeInfo element = of(((GenericArrayType)type).getGenericComponentType());
+                return new TypeInfo(KIND_ARRAY, Array.newInstance(element.clazz, 0).getClass(), element);
+            } else if (type instanceof WildcardType) {
+                return of(((WildcardType)type).getUpperBounds()[0]);
+            }
+            // type variable, bound according to json
+            return ANY;
+        }
+
+        /**
+         * @param clazz
+         * @param arguments generic type arguments, null if not parameterized
+         * @return
+         */
+        private static TypeInfo of(Class<?> clazz, Type[] arguments) {
+            if (clazz == Object.class) {
+                return ANY;
+            } else if (clazz.isArray()) {
+                return new TypeInfo(KIND_ARRAY, clazz, of(clazz.getComponentType()));
+            } else if (Collection.class.isAssignableFrom(clazz) || clazz == Iterable.class) {
+                TypeInfo element = (arguments == null || arguments.length != 1) ? ANY : of(arguments[0]);
+                if (clazz.isAssignableFrom(ArrayList.class)) {
+                    return new TypeInfo(KIND_COLLECTION, clazz, element);
+                } else if (clazz.isAssignableFrom(HashSet.class)) {
+                    return new TypeInfo(KIND_COLLECTION, clazz, element, HashSet.class);
+                } else if (clazz.isAssignableFrom(TreeSet.class)) {
+                    return new TypeInfo(KIND_COLLECTION, clazz, element, TreeSet.class);
+                } else if (clazz.isAssignableFrom(LinkedList.class)) {
+                    return new TypeInfo(KIND_COLLECTION, clazz, element, LinkedList.class);
+                } else if (isInstantiable(clazz)) {
+                    return new TypeInfo(KIND_COLLECTION, clazz, element, clazz);
+                }
+                return new TypeInfo(KIND_UNSUPPORTED, clazz, null);
+            } else if (Map.class.isAssignableFrom(clazz)) {
+                TypeInfo element = (arguments == null || arguments.length != 2) ? ANY : of(arguments[1]);
+                if (clazz.isAssignableFrom(HashMap.class)) {
+                    return new TypeInfo(KIND_MAP, clazz, element);
+                } else if (clazz.isAssignableFrom(TreeMap.class)) {
+                    return new TypeInfo(KIND_MAP, clazz, element, TreeMap.class);
+                } else if (isInstantiable(clazz)) {
+                    return new TypeInfo(KIND_MAP, clazz, element, clazz);
+                }
+                return new TypeInfo(KIND_UNSUPPORTED, clazz, null);
+            } else if (clazz == String.class) {
+                return new TypeInfo(KIND_STRING, clazz, null);
+            } else if (clazz.isEnum()) {
+                return new TypeInfo(KIND_ENUM, clazz, null);
+            } else if (clazz == boolean.class || clazz == Boolean.class) {
+                return new TypeInfo(KIND_BOOLEAN, clazz, null);
+            } else if (clazz == int.class || clazz == Integer.class) {
+                return new TypeInfo(KIND_INT, clazz, null);
+            } else if (clazz == long.class || clazz == Long.class) {
+                return new TypeInfo(KIND_LONG, clazz, null);
+            } else if (clazz == double.class || clazz == Double.class) {
+                return new TypeInfo(KIND_DOUBLE, clazz, null);
+            } else if (clazz == float.class || clazz == Float.class) {
+                return new TypeInfo(KIND_FLOAT, clazz, null);
+            } else if (clazz == short.class || clazz == Short.class) {
+                return new TypeInfo(KIND_SHORT, clazz, null);
+            } else if (clazz == byte.class || clazz == Byte.class) {
+                return new TypeInfo(KIND_BYTE, clazz, null);
+            } else if (clazz == char.class || clazz == Character.class) {
+                return new TypeInfo(KIND_CHAR, clazz, null);
+            } else if (!isConcrete(clazz)) {
+                return new TypeInfo(KIND_UNSUPPORTED, clazz, null);
+            }
+            return new TypeInfo(KIND_OBJECT, clazz, null);
+        }
+
+        private static boolean isConcrete(Class<?> clazz) {
+            return !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers());
+        }
+
+        private static boolean isInstantiable(Class<?> clazz) {
+            return isConcrete(clazz) && getConstructor(clazz) != null;
+        }
+    }
+
+    /**
+     * fields and constructor of class, found by reflection once and cached
+     */
+    static class ClassBinding {
+
+        private static final BindingCache CACHE = new BindingCache();
+
+        final Class<?>                    clazz;
+        /** fields of class and its super classes, fields of sub class first **/
+        final FieldBinding[]              fields;
+        final Map<String, FieldBinding>   fieldMap;
+        /** constructor without parameters, null if not exist **/
+        private final Constructor<?>      constructor;
+
+        private ClassBinding(Class<?> clazz){
+            this.clazz = clazz;
+            List<FieldBinding> fieldList = new ArrayList<FieldBinding>();
+            fieldMap = new HashMap<String, FieldBinding>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+
+                    Key key = field.getAnnotation(Key.class);
+                    String name = (key == null ? field.getName() : key.value());
+                    // hidden by field of sub class
+                    if (fieldMap.containsKey(name)) {
+                        continue;
+                    }
+                    TypeInfo type = TypeInfo.of(field.getGenericType());
+                    // can not be bound, ignored like key without field
+                    if (!type.isSupported) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    FieldBinding fieldBinding = new FieldBinding(name, field, type);
+                    fieldList.add(fieldBinding);
+                    fieldMap.put(name, fieldBinding);
+                }
+            }
+            fields = fieldList.toArray(new FieldBinding[fieldList.size()]);
+
+            // checked when instantiate
+            this.constructor = TypeInfo.getConstructor(clazz);
+        }
+
+        /**
+         * get binding of class, created at first time
+         * 
+         * @param clazz
+         * @return
+         */
+        static ClassBinding get(Class<?> clazz) {
+            ClassBinding binding = CACHE.get(clazz);
+            if (binding == null) {
+                binding = new ClassBinding(clazz);
+                ClassBinding oldBinding = CACHE.putIfAbsent(clazz, binding);
+                if (oldBinding != null) {
+                    binding = oldBinding;
+                }
+            }
+            return binding;
+        }
+
+        Object newInstance() throws JSONException {
+            if (constructor == null) {
+                throw new JSONException(clazz.getName() + " has no constructor without parameters");
+            }
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new JSONException("Instantiate " + clazz.getName() + " fail: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * cache of {@link ClassBinding} by class
+     */
+    private static class BindingCache extends ConcurrentHashMap<Class<?>, ClassBinding> {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * field and its key in json
+     */
+    static class FieldBinding {
+
+        final String   name;
+        final Field    field;
+        final TypeInfo type;
+
+        FieldBinding(String name, Field field, TypeInfo type){
+            this.name = name;
+            this.field = field;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package cn.trinea.android.common.util;
+
+import org.json.JSONException;
+
+/**
+ * <strong>JSON Reader</strong><br/>
+ * <br/>
+ * Read json string token by token without building {@link org.json.JSONObject} tree.<br/>
+ * <ul>
+ * <strong>Usage</strong>
+ * <li>{@link #peek()} get type of next token, one of {@link #BEGIN_OBJECT}, {@link #END_OBJECT},
+ * {@link #BEGIN_ARRAY}, {@link #END_ARRAY}, {@link #NAME}, {@link #STRING}, {@link #NUMBER}, {@link #BOOLEAN},
+ * {@link #NULL} and {@link #END_DOCUMENT}</li>
+ * <li>{@link #beginObject()}, {@link #endObject()}, {@link #beginArray()} and {@link #endArray()}</li>
+ * <li>{@link #hasNext()} whether current object or array has more elements</li>
+ * <li>{@link #nextName()}, {@link #nextString()}, {@link #nextLong()}, {@link #nextInt()}, {@link #nextDouble()},
+ * {@link #nextBoolean()} and {@link #nextNull()} consume next token</li>
+ * <li>{@link #skipValue()} skip next value, {@link #nextRawValue()} get json text of next value</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Not thread-safe</li>
+ * <li>{@link JSONException} is thrown when json is malformed or token is not expected</li>
+ * </ul>
+ * 
+ * <pre>
+ * JSONReader reader = new JSONReader(json);
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     if (&quot;id&quot;.equals(name)) {
+ *         id = reader.nextLong();
+ *     } else {
+ *         reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();
+ * </pre>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-27
+ */
+public class JSONReader {
+
+    public static final int  BEGIN_OBJECT      = 1;
+    public static final int  END_OBJECT        = 2;
+    public static final int  BEGIN_ARRAY       = 3;
+    public static final int  END_ARRAY         = 4;
+    public static final int  NAME              = 5;
+    public static final int  STRING            = 6;
+    public static final int  NUMBER            = 7;
+    public static final int  BOOLEAN           = 8;
+    public static final int  NULL              = 9;
+    public static final int  END_DOCUMENT      = 10;
+
+    /** next token is not peeked **/
+    private static final int PEEKED_NONE       = 0;
+
+    private static final int EMPTY_DOCUMENT    = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT      = 2;
+    /** name of object is read, colon and value is expected **/
+    private static final int DANGLING_NAME     = 3;
+    private static final int NONEMPTY_OBJECT   = 4;
+    private static final int EMPTY_ARRAY       = 5;
+    private static final int NONEMPTY_ARRAY    = 6;
+
+    private final String     json;
+    private final int        length;
+    private int              pos;
+    /** type of token peeked, {@link #PEEKED_NONE} represents not peeked **/
+    private int              peeked            = PEEKED_NONE;
+    /** start index of value peeked **/
+    private int              valueStart;
+
+    /** scopes of nested objects and arrays **/
+    private int[]            stack             = new int[32];
+    private int              stackSize         = 0;
+
+    /**
+     * @param json
+     */
+    public JSONReader(String json){
+        if (json == null) {
+            throw new IllegalArgumentException("The json can not be null.");
+        }
+        this.json = json;
+        this.length = json.length();
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * get type of next token without consuming it
+     * 
+     * @return
+     * @throws JSONException if json is malformed
+     */
+    public int peek() throws JSONException {
+        return peeked != PEEKED_NONE ? peeked : doPeek();
+    }
+
+    private int doPeek() throws JSONException {
+        int scope = stack[stackSize - 1];
+        if (scope == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = nextNonSpace();
+            if (c == ']') {
+                pos++;
+                return peeked = END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+            pos++;
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            int c = nextNonSpace();
+            if (c == '}') {
+                pos++;
+                return peeked = END_OBJECT;
+            }
+            if (scope == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+                pos++;
+                c = nextNonSpace();
+            }
+            if (c != '"') {
+                throw syntaxError("Expected name");
+            }
+            pos++;
+            return peeked = NAME;
+        } else if (scope == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonSpace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+            pos++;
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            skipSpace();
+            if (pos == length) {
+                return peeked = END_DOCUMENT;
+            }
+            throw syntaxError("Unexpected content after document");
+        }
+
+        int c = nextNonSpace();
+        valueStart = pos;
+        switch (c) {
+            case '{':
+                pos++;
+                return peeked = BEGIN_OBJECT;
+            case '[':
+                pos++;
+                return peeked = BEGIN_ARRAY;
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    pos++;
+                    return peeked = END_ARRAY;
+                }
+                throw syntaxError("Unexpected value");
+            case '"':
+                pos++;
+                return peeked = STRING;
+            case 't':
+                return peekLiteral("true", BOOLEAN);
+            case 'f':
+                return peekLiteral("false", BOOLEAN);
+            case 'n':
+                return peekLiteral("null", NULL);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return peeked = NUMBER;
+                }
+                throw syntaxError("Unexpected value");
+        }
+    }
+
+    private int peekLiteral(String literal, int type) throws JSONException {
+        if (!json.startsWith(literal, pos)) {
+            throw syntaxError("Unexpected value");
+        }
+        return peeked = type;
+    }
+
+    public void beginObject() throws JSONException {
+        expect(BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        peeked = PEEKED_NONE;
+    }
+
+    public void endObject() throws JSONException {
+        expect(END_OBJECT);
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    public void beginArray() throws JSONException {
+        expect(BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        peeked = PEEKED_NONE;
+    }
+
+    public void endArray() throws JSONException {
+        expect(END_ARRAY);
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    /**
+     * whether current object or array has more elements
+     * 
+     * @return
+     * @throws JSONException
+     */
+    public boolean hasNext() throws JSONException {
+        int p = peek();
+        return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+    }
+
+    /**
+     * get next name of object
+     * 
+     * @return
+     * @throws JSONException if next token is not name
+     */
+    public String nextName() throws JSONException {
+        expect(NAME);
+        String name = readString();
+        peeked = PEEKED_NONE;
+        return name;
+    }
+
+    /**
+     * get next string value, number is returned as its literal
+     * 
+     * @return
+     * @throws JSONException if next token is not string or number
+     */
+    public String nextString() throws JSONException {
+        int p = peek();
+        String value;
+        if (p == STRING) {
+            value = readString();
+        } else if (p == NUMBER) {
+            value = readNumber();
+        } else {
+            throw syntaxError("Expected string");
+        }
+        peeked = PEEKED_NONE;
+        return value;
+    }
+
+    /**
+     * get next boolean value
+     * 
+     * @return
+     * @throws JSONException if next token is not boolean
+     */
+    public boolean nextBoolean() throws JSONException {
+        expect(BOOLEAN);
+        boolean value = json.charAt(pos) == 't';
+        pos += value ? 4 : 5;
+        peeked = PEEKED_NONE;
+        return value;
+    }
+
+    /**
+     * consume next null value
+     * 
+     * @throws JSONException if next token is not null
+     */
+    public void nextNull() throws JSONException {
+        expect(NULL);
+        pos += 4;
+        peeked = PEEKED_NONE;
+    }
+
+    /**
+     * get next long value, string is parsed to long like {@link org.json.JSONObject#getLong(String)}
+     * 
+     * @return
+     * @throws JSONException if next token is not number or string of number
+     */
+    public long nextLong() throws JSONException {
+        String value = nextNumberString();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            double d = parseDouble(value);
+            if (d < Long.MIN_VALUE || d > Long.MAX_VALUE) {
+                throw syntaxError("Long out of range " + value);
+            }
+            return (long)d;
+        }
+    }
+
+    /**
+     * get next int value, string is parsed to int like {@link org.json.JSONObject#getInt(String)}
+     * 
+     * @return
+     * @throws JSONException if next token is not number or string of number
+     */
+    public int nextInt() throws JSONException {
+        String value = nextNumberString();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            double d = parseDouble(value);
+            if (d < Integer.MIN_VALUE || d > Integer.MAX_VALUE) {
+                throw syntaxError("Int out of range " + value);
+            }
+            return (int)d;
+        }
+    }
+
+    /**
+     * get next double value, string is parsed to double like {@link org.json.JSONObject#getDouble(String)}
+     * 
+     * @return
+     * @throws JSONException if next token is not number or string of number
+     */
+    public double nextDouble() throws JSONException {
+        return parseDouble(nextNumberString());
+    }
+
+    /**
+     * skip next value, include all nested elements if it's object or array. If next token is name, skip it
+     * 
+     * @throws JSONException
+     */
+    public void skipValue() throws JSONException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    skipString();
+                    peeked = PEEKED_NONE;
+                    break;
+                case STRING:
+                    skipString();
+                    peeked = PEEKED_NONE;
+                    break;
+                case NUMBER:
+                    readNumber();
+                    peeked = PEEKED_NONE;
+                    break;
+                case BOOLEAN:
+                    nextBoolean();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                default:
+                    throw syntaxError("Unexpected end of document");
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * get json text of next value without parse it
+     * 
+     * @return likes {"a":1}, [1,2], "text" with quotes, 1.5, true or null
+     * @throws JSONException
+     */
+    public String nextRawValue() throws JSONException {
+        int p = peek();
+        if (p == NAME || p == END_OBJECT || p == END_ARRAY || p == END_DOCUMENT) {
+            throw syntaxError("Expected value");
+        }
+        int start = valueStart;
+        skipValue();
+        return json.substring(start, pos);
+    }
+
+    private String nextNumberString() throws JSONException {
+        int p = peek();
+        if (p != NUMBER && p != STRING) {
+            throw syntaxError("Expected number");
+        }
+        String value = (p == NUMBER ? readNumber() : readString().trim());
+        peeked = PEEKED_NONE;
+        return value;
+    }
+
+    private double parseDouble(String value) throws JSONException {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected number but was " + value);
+        }
+    }
+
+    /**
+     * read number literal from pos
+     * 
+     * @return
+     */
+    private String readNumber() {
+        int start = pos;
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return json.substring(start, pos);
+    }
+
+    /**
+     * read string from pos, which is after the opening quote, pos will be after the closing quote
+     * 
+     * @return unescaped string
+     * @throws JSONException
+     */
+    private String readString() throws JSONException {
+        int start = pos;
+        // fast path, no escape
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                return json.substring(start, pos++);
+            } else if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        sb.append(json, start, pos);
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            } else if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+
+            if (pos == length) {
+                break;
+            }
+            c = json.charAt(pos++);
+            switch (c) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > length) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    try {
+                        sb.append((char)Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    // \", \\, \/ and others
+                    sb.append(c);
+                    break;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * skip string from pos, which is after the opening quote
+     * 
+     * @throws JSONException
+     */
+    private void skipString() throws JSONException {
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                pos++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private void expect(int type) throws JSONException {
+        if (peek() != type) {
+            throw syntaxError("Expected token " + type + " but was " + peeked);
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private void skipSpace() {
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * skip space and get next char
+     * 
+     * @return
+     * @throws JSONException if end of json
+     */
+    private int nextNonSpace() throws JSONException {
+        skipSpace();
+        if (pos == length) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return json.charAt(pos);
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + pos);
+    }
+}
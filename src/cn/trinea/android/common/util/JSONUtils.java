@@ -1,8 +1,10 @@
 package cn.trinea.android.common.util;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -10,11 +12,119 @@ import org.json.JSONObject;
 
 /**
  * Json Utils
+ * <ul>
+ * <strong>Parse</strong>
+ * <li>get*(String jsonData, ...) parse jsonData every time, to get several values from the same jsonData, parse it
+ * by {@link JSONObject#JSONObject(String)} once and use get*(JSONObject jsonObject, ...)</li>
+ * <li>{@link #getValues(String, String...)} get values of paths in one pass by {@link JSONReader}, without building
+ * {@link JSONObject} tree</li>
+ * </ul>
  * 
  * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2012-5-12
  */
 public class JSONUtils {
 
+    /**
+     * get values of paths from jsonData in one pass, without building {@link JSONObject} tree
+     * 
+     * @param jsonData
+     * @param paths likes <code>name</code>, <code>user.name</code> or <code>users[0].name</code>, key contains
+     *        <code>.</code> or <code>[</code> is not supported. If one path is parent of another, the latter is
+     *        not read
+     * @return map of path and value, path not exist will not be contained. Value is
+     *         <ul>
+     *         <li>unescaped string for json string</li>
+     *         <li>literal for number and boolean</li>
+     *         <li>json text for object and array</li>
+     *         <li>null for json null</li>
+     *         </ul>
+     *         if jsonData is empty or not a valid json, return null
+     */
+    public static Map<String, String> getValues(String jsonData, String... paths) {
+        if (StringUtils.isEmpty(jsonData) || paths == null) {
+            return null;
+        }
+
+        // paths and all their parents, only parents are read into
+        Set<String> pathSet = new HashSet<String>();
+        Set<String> parentSet = new HashSet<String>();
+        for (String path : paths) {
+            if (path == null || !pathSet.add(path)) {
+                continue;
+            }
+            parentSet.add("");
+            for (int i = 1; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (c == '.' || c == '[') {
+                    parentSet.add(path.substring(0, i));
+                }
+            }
+        }
+
+        Map<String, String> valueMap = new HashMap<String, String>();
+        try {
+            readValues(new JSONReader(jsonData), "", pathSet, parentSet, valueMap);
+            return valueMap;
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * read values of paths from next value of reader
+     * 
+     * @param reader
+     * @param path path of next value
+     * @param pathSet
+     * @param parentSet
+     * @param valueMap
+     * @return whether all paths are read, if true, reader is not read to end
+     * @throws JSONException
+     */
+    private static boolean readValues(JSONReader reader, String path, Set<String> pathSet, Set<String> parentSet,
+                                      Map<String, String> valueMap) throws JSONException {
+        if (pathSet.contains(path)) {
+            int token = reader.peek();
+            if (token == JSONReader.BEGIN_OBJECT || token == JSONReader.BEGIN_ARRAY) {
+                valueMap.put(path, reader.nextRawValue());
+            } else if (token == JSONReader.BOOLEAN) {
+                valueMap.put(path, Boolean.toString(reader.nextBoolean()));
+            } else if (token == JSONReader.NULL) {
+                reader.nextNull();
+                valueMap.put(path, null);
+            } else {
+                valueMap.put(path, reader.nextString());
+            }
+            return valueMap.size() == pathSet.size();
+        }
+
+        int token = reader.peek();
+        if (!parentSet.contains(path)) {
+            reader.skipValue();
+        } else if (token == JSONReader.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (readValues(reader, path.length() == 0 ? name : path + "." + name, pathSet, parentSet, valueMap)) {
+                    return true;
+                }
+            }
+            reader.endObject();
+        } else if (token == JSONReader.BEGIN_ARRAY) {
+            reader.beginArray();
+            for (int i = 0; reader.hasNext(); i++) {
+                if (readValues(reader, path + "[" + i + "]", pathSet, parentSet, valueMap)) {
+                    return true;
+                }
+            }
+            reader.endArray();
+        } else {
+            reader.skipValue();
+        }
+        return false;
+    }
+
     /**
      * get Long from jsonObject
      * 
@@ -0,0 +1,601 @@
+package cn.trinea.android.common.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import cn.trinea.android.common.util.JSONBinder.ClassBinding;
+import cn.trinea.android.common.util.JSONBinder.FieldBinding;
+
+/**
+ * <strong>JSON Writer</strong><br/>
+ * <br/>
+ * Write json to {@link Writer}, {@link OutputStream} or reusable buffer, chars are buffered and escaped by lookup
+ * table.<br/>
+ * <ul>
+ * <strong>Write</strong>
+ * <li>{@link #toJson(Object)} get json string of value</li>
+ * <li>{@link #value(Object)} write value, can be null, String, Number, Boolean, Character, enum, Map, Iterable,
+ * array, {@link JSONObject}, {@link JSONArray} and class supported by {@link JSONBinder}</li>
+ * <li>{@link #beginObject()}, {@link #endObject()}, {@link #beginArray()}, {@link #endArray()}, {@link #name(String)}
+ * and value(...) write token by token</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Not thread-safe</li>
+ * <li>If writer or output stream is set, {@link #flush()} should be called after written, it will not be closed</li>
+ * <li>If not set, json is kept in buffer, get it by {@link #toString()}, buffer can be reused after {@link #reset()}
+ * </li>
+ * <li>Fields of object are written like {@link JSONBinder} read them, null field is not written</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-29
+ */
+public class JSONWriter {
+
+    private static final int      DEFAULT_BUFFER_SIZE = 8 * 1024;
+    /** initial size of buffer when buffer only, expanded when needed **/
+    private static final int      INIT_BUFFER_SIZE    = 256;
+    /** max depth of nested objects and arrays, avoid endless loop of circular reference **/
+    private static final int      MAX_DEPTH           = 255;
+    /** escaped string of ascii chars, null represents need not escape **/
+    private static final String[] REPLACEMENTS        = new String[128];
+
+    private static final int      EMPTY_OBJECT        = 1;
+    private static final int      NONEMPTY_OBJECT     = 2;
+    private static final int      EMPTY_ARRAY         = 3;
+    private static final int      NONEMPTY_ARRAY      = 4;
+
+    /** null represents buffer only **/
+    private final Writer          out;
+    private char[]                buffer;
+    private int                   count;
+
+    /** scopes of nested objects and arrays **/
+    private int[]                 stack               = new int[32];
+    private int                   stackSize           = 0;
+    /** whether name is written and its value is expected **/
+    private boolean               isNameWritten       = false;
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            REPLACEMENTS[i] = String.format("\\u%04x", i);
+        }
+        REPLACEMENTS['"'] = "\\\"";
+        REPLACEMENTS['\\'] = "\\\\";
+        REPLACEMENTS['\t'] = "\\t";
+        REPLACEMENTS['\b'] = "\\b";
+        REPLACEMENTS['\n'] = "\\n";
+        REPLACEMENTS['\r'] = "\\r";
+        REPLACEMENTS['\f'] = "\\f";
+    }
+
+    /**
+     * json is kept in buffer, get it by {@link #toString()}
+     */
+    public JSONWriter(){
+        this((Writer)null);
+    }
+
+    /**
+     * @param out null represents buffer only
+     */
+    public JSONWriter(Writer out){
+        this.out = out;
+        this.buffer = new char[out == null ? INIT_BUFFER_SIZE : DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * @param output json is written in UTF-8
+     */
+    public JSONWriter(OutputStream output){
+        this(newUtf8Writer(output));
+    }
+
+    /**
+     * get json string of value
+     * 
+     * @param value see {@link #value(Object)}
+     * @return
+     * @throws IllegalArgumentException if value or object in it is not supported
+     */
+    public static String toJson(Object value) {
+        JSONWriter writer = new JSONWriter();
+        try {
+            writer.value(value);
+        } catch (IOException e) {
+            // never happen when buffer only
+            throw new RuntimeException("IOException occurred. ", e);
+        }
+        return writer.toString();
+    }
+
+    public JSONWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        write('{');
+        return this;
+    }
+
+    public JSONWriter endObject() throws IOException {
+        int scope = peekScope();
+        if ((scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) || isNameWritten) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stackSize--;
+        write('}');
+        return this;
+    }
+
+    public JSONWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        write('[');
+        return this;
+    }
+
+    public JSONWriter endArray() throws IOException {
+        int scope = peekScope();
+        if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        stackSize--;
+        write(']');
+        return this;
+    }
+
+    /**
+     * write name of object, value should be written next
+     * 
+     * @param name
+     * @return
+     * @throws IOException
+     */
+    public JSONWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new IllegalArgumentException("The name can not be null.");
+        }
+        int scope = peekScope();
+        if ((scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) || isNameWritten) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        if (scope == NONEMPTY_OBJECT) {
+            write(',');
+        }
+        stack[stackSize - 1] = NONEMPTY_OBJECT;
+        writeString(name);
+        write(':');
+        isNameWritten = true;
+        return this;
+    }
+
+    public JSONWriter nullValue() throws IOException {
+        beforeValue();
+        write("null");
+        return this;
+    }
+
+    public JSONWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JSONWriter value(boolean value) throws IOException {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    public JSONWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * @param value integral value is written without decimal point, likes 1 not 1.0
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if value is NaN or infinite
+     */
+    public JSONWriter value(double value) throws IOException {
+        beforeValue();
+        writeDouble(value);
+        return this;
+    }
+
+    /**
+     * write value
+     * 
+     * @param value can be null, String, Number, Boolean, Character, enum, Map, Iterable, array, {@link JSONObject},
+     *        {@link JSONArray} and class supported by {@link JSONBinder}
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if value or object in it is not supported
+     */
+    public JSONWriter value(Object value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        } else if (value instanceof String) {
+            return value((String)value);
+        } else if (value instanceof Number) {
+            return value((Number)value);
+        } else if (value instanceof Boolean) {
+            return value(((Boolean)value).booleanValue());
+        } else if (value instanceof Character || value instanceof CharSequence) {
+            return value(value.toString());
+        } else if (value instanceof Enum) {
+            return value(((Enum<?>)value).name());
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        } else if (value instanceof Iterable) {
+            beginArray();
+            for (Object o : (Iterable<?>)value) {
+                value(o);
+            }
+            return endArray();
+        } else if (value.getClass().isArray()) {
+            return array(value);
+        } else if (value instanceof JSONObject || value instanceof JSONArray) {
+            // toString of them is json
+            beforeValue();
+            write(value.toString());
+            return this;
+        }
+        return object(value, ClassBinding.get(value.getClass()));
+    }
+
+    private JSONWriter value(Number value) throws IOException {
+        beforeValue();
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeLong(value.longValue());
+        } else if (value instanceof Double) {
+            writeDouble(value.doubleValue());
+        } else if (value instanceof Float) {
+            writeFloat(value.floatValue());
+        } else {
+            String s = value.toString();
+            if ("NaN".equals(s) || s.endsWith("Infinity")) {
+                throw new IllegalArgumentException("Numeric values must be finite, but was " + s);
+            }
+            write(s);
+        }
+        return this;
+    }
+
+    /**
+     * write array, elements of primitive array are written without boxing
+     */
+    private JSONWriter array(Object array) throws IOException {
+        beginArray();
+        if (array instanceof Object[]) {
+            for (Object o : (Object[])array) {
+                value(o);
+            }
+        } else if (array instanceof int[]) {
+            for (int i : (int[])array) {
+                value(i);
+            }
+        } else if (array instanceof long[]) {
+            for (long l : (long[])array) {
+                value(l);
+            }
+        } else if (array instanceof double[]) {
+            for (double d : (double[])array) {
+                value(d);
+            }
+        } else if (array instanceof float[]) {
+            for (float f : (float[])array) {
+                beforeValue();
+                writeFloat(f);
+            }
+        } else if (array instanceof boolean[]) {
+            for (boolean b : (boolean[])array) {
+                value(b);
+            }
+        } else if (array instanceof short[]) {
+            for (short s : (short[])array) {
+                value(s);
+            }
+        } else if (array instanceof byte[]) {
+            for (byte b : (byte[])array) {
+                value(b);
+            }
+        } else {
+            for (char c : (char[])array) {
+                value(String.valueOf(c));
+            }
+        }
+        return endArray();
+    }
+
+    /**
+     * write fields of object, primitive fields are got without boxing
+     */
+    private JSONWriter object(Object object, ClassBinding binding) throws IOException {
+        beginObject();
+        for (FieldBinding fieldBinding : binding.fields) {
+            Field field = fieldBinding.field;
+            try {
+                if (!fieldBinding.type.isPrimitive) {
+                    Object fieldValue = field.get(object);
+                    if (fieldValue != null) {
+                        name(fieldBinding.name).value(fieldValue);
+                    }
+                    continue;
+                }
+
+                name(fieldBinding.name);
+                switch (fieldBinding.type.kind) {
+                    case JSONBinder.KIND_BOOLEAN:
+                        value(field.getBoolean(object));
+                        break;
+                    case JSONBinder.KIND_INT:
+                        value(field.getInt(object));
+                        break;
+                    case JSONBinder.KIND_LONG:
+                        value(field.getLong(object));
+                        break;
+                    case JSONBinder.KIND_DOUBLE:
+                        value(field.getDouble(object));
+                        break;
+                    case JSONBinder.KIND_FLOAT:
+                        beforeValue();
+                        writeFloat(field.getFloat(object));
+                        break;
+                    case JSONBinder.KIND_SHORT:
+                        value(field.getShort(object));
+                        break;
+                    case JSONBinder.KIND_BYTE:
+                        value(field.getByte(object));
+                        break;
+                    default:
+                        value(String.valueOf(field.getChar(object)));
+                        break;
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Get field " + fieldBinding.name + " fail.", e);
+            }
+        }
+        return endObject();
+    }
+
+    /**
+     * write chars in buffer to writer or output stream, and flush it
+     * 
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            out.write(buffer, 0, count);
+            count = 0;
+            out.flush();
+        }
+    }
+
+    /**
+     * clear buffer and state, so it can be reused
+     */
+    public void reset() {
+        count = 0;
+        stackSize = 0;
+        isNameWritten = false;
+    }
+
+    /**
+     * get json in buffer
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, count);
+    }
+
+    private void beforeValue() throws IOException {
+        if (stackSize == 0) {
+            return;
+        }
+
+        int scope = stack[stackSize - 1];
+        if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            if (!isNameWritten) {
+                throw new IllegalStateException("Name should be written before value of object.");
+            }
+            isNameWritten = false;
+        } else {
+            if (scope == NONEMPTY_ARRAY) {
+                write(',');
+            }
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        }
+    }
+
+    private int peekScope() {
+        if (stackSize == 0) {
+            throw new IllegalStateException("Not in object or array.");
+        }
+        return stack[stackSize - 1];
+    }
+
+    private void push(int scope) {
+        if (stackSize == MAX_DEPTH) {
+            throw new IllegalArgumentException("Nesting too deep, may be circular reference.");
+        }
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * write string with quotes. String is copied into buffer and scanned there, if some char needs escape, rewrite
+     * from it with chars replaced by {@link #REPLACEMENTS}
+     */
+    private void writeString(String s) throws IOException {
+        int length = s.length();
+        ensureCapacity(length + 2);
+        buffer[count++] = '"';
+        s.getChars(0, length, buffer, count);
+        int end = count + length;
+        for (int i = count; i < end; i++) {
+            char c = buffer[i];
+            if (c < 128 ? REPLACEMENTS[c] != null : (c == '\u2028' || c == '\u2029')) {
+                count = i;
+                writeEscaped(s, i - (end - length));
+                return;
+            }
+        }
+        count = end;
+        buffer[count++] = '"';
+    }
+
+    /**
+     * write string with closing quote from index, chars need escape are replaced, others are copied in bulk
+     */
+    private void writeEscaped(String s, int index) throws IOException {
+        int last = index, length = s.length();
+        for (int i = index; i < length; i++) {
+            char c = s.charAt(i);
+            String replacement;
+            if (c < 128) {
+                replacement = REPLACEMENTS[c];
+                if (replacement == null) {
+                    continue;
+                }
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            if (last < i) {
+                write(s, last, i);
+            }
+            write(replacement);
+            last = i + 1;
+        }
+        if (last < length) {
+            write(s, last, length);
+        }
+        write('"');
+    }
+
+    /**
+     * write digits of long into buffer directly
+     */
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            write("-9223372036854775808");
+            return;
+        }
+
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digitCount = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digitCount++;
+        }
+        for (int i = count + digitCount - 1; i >= count; i--) {
+            buffer[i] = (char)('0' + value % 10);
+            value /= 10;
+        }
+        count += digitCount;
+    }
+
+    private void writeDouble(double value) throws IOException {
+        checkFinite(value);
+        if (value == (long)value && Math.abs(value) < 1e15) {
+            writeLong((long)value);
+        } else {
+            write(Double.toString(value));
+        }
+    }
+
+    /**
+     * write float by {@link Float#toString(float)}, so 1.1f is not written as 1.100000023841858
+     */
+    private void writeFloat(float value) throws IOException {
+        checkFinite(value);
+        if (value == (long)value && Math.abs(value) < 1e15) {
+            writeLong((long)value);
+        } else {
+            write(Float.toString(value));
+        }
+    }
+
+    private static void checkFinite(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+    }
+
+    private void write(char c) throws IOException {
+        ensureCapacity(1);
+        buffer[count++] = c;
+    }
+
+    private void write(String s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+    private void write(String s, int start, int end) throws IOException {
+        ensureCapacity(end - start);
+        s.getChars(start, end, buffer, count);
+        count += end - start;
+    }
+
+    /**
+     * ensure buffer can hold more size chars, flush buffer to writer if full, else expand buffer
+     */
+    private void ensureCapacity(int size) throws IOException {
+        if (count + size <= buffer.length) {
+            return;
+        }
+        if (out != null) {
+            out.write(buffer, 0, count);
+            count = 0;
+            if (size <= buffer.length) {
+                return;
+            }
+        }
+        expandCapacity(size);
+    }
+
+    private void expandCapacity(int size) {
+        char[] newBuffer = new char[Math.max(buffer.length * 2, count + size)];
+        System.arraycopy(buffer, 0, newBuffer, 0, count);
+        buffer = newBuffer;
+    }
+
+    private static Writer newUtf8Writer(OutputStream output) {
+        if (output == null) {
+            throw new IllegalArgumentException("The output can not be null.");
+        }
+        try {
+            return new OutputStreamWriter(output, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UnsupportedEncodingException occurred. ", e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package cn.trinea.android.common.util;
+
+import java.io.Serializable;
+
+/**
+ * <strong>LongArrayList</strong><br/>
+ * <br/>
+ * List of long without boxing, elements are stored in a contiguous long array which grows when full.<br/>
+ * <ul>
+ * <strong>Usage</strong>
+ * <li>{@link #add(long)}, {@link #add(int, long)} and {@link #addAll(long[])}</li>
+ * <li>{@link #get(int)}, {@link #set(int, long)} and {@link #removeAt(int)}</li>
+ * <li>{@link #indexOf(long)} and {@link #contains(long)}</li>
+ * <li>{@link #toArray()} copy elements to a new array</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Not thread-safe</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-30
+ */
+public class LongArrayList implements Serializable {
+
+    private static final long serialVersionUID         = 1L;
+
+    public static final int   DEFAULT_INITIAL_CAPACITY = 10;
+
+    private long[]            elements;
+    private int               size;
+
+    /**
+     * initial capacity is {@link #DEFAULT_INITIAL_CAPACITY}
+     */
+    public LongArrayList(){
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity
+     */
+    public LongArrayList(int initialCapacity){
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("The initialCapacity can not be less than 0.");
+        }
+        elements = new long[initialCapacity];
+    }
+
+    /**
+     * @param source elements are copied
+     */
+    public LongArrayList(long[] source){
+        elements = source.clone();
+        size = source.length;
+    }
+
+    public void add(long value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * insert value at index, elements from index are shifted right
+     * 
+     * @param index
+     * @param value
+     */
+    public void add(int index, long value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+    }
+
+    public void addAll(long[] values) {
+        ensureCapacity(size + values.length);
+        System.arraycopy(values, 0, elements, size, values.length);
+        size += values.length;
+    }
+
+    public long get(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * @param index
+     * @param value
+     * @return previous value at index
+     */
+    public long set(int index, long value) {
+        checkIndex(index);
+        long previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    /**
+     * remove value at index, elements after index are shifted left
+     * 
+     * @param index
+     * @return value removed
+     */
+    public long removeAt(int index) {
+        checkIndex(index);
+        long previous = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return previous;
+    }
+
+    /**
+     * @param value
+     * @return index of the first one equals to value, -1 if not exist
+     */
+    public int indexOf(long value) {
+        for (int i = 0; i < size; i++) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * remove all elements, capacity is kept
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * ensure list can hold minCapacity elements without grow
+     * 
+     * @param minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * @return new array of elements
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        System.arraycopy(elements, 0, result, 0, size);
+        return result;
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = elements.length + (elements.length >> 1) + 1;
+        long[] newElements = new long[Math.max(newCapacity, minCapacity)];
+        System.arraycopy(elements, 0, newElements, 0, size);
+        elements = newElements;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,306 @@
+package cn.trinea.android.common.util;
+
+import java.io.Serializable;
+
+/**
+ * <strong>LongObjectMap</strong><br/>
+ * <br/>
+ * Map from long to object without boxing key, keys and values are stored in arrays by open addressing with linear
+ * probing.<br/>
+ * <ul>
+ * <strong>Usage</strong>
+ * <li>{@link #put(long, Object)}, {@link #get(long)}, {@link #containsKey(long)} and {@link #remove(long)}</li>
+ * <li>{@link #forEach(EntryVisitor)} visit all entries, {@link #keys()} get all keys</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>Not thread-safe</li>
+ * <li>Value can be null, use {@link #containsKey(long)} to distinguish from not exist</li>
+ * <li>Entries should not be put or removed in {@link #forEach(EntryVisitor)}</li>
+ * </ul>
+ * 
+ * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-11-30
+ */
+public class LongObjectMap<V> implements Serializable {
+
+    private static final long serialVersionUID      = 1L;
+
+    public static final int   DEFAULT_EXPECTED_SIZE = 16;
+    private static final int  MAX_CAPACITY          = 1 << 30;
+
+    /** key of empty slot, key 0 itself is stored out of arrays **/
+    private static final long EMPTY_KEY             = 0;
+
+    private long[]            keys;
+    private Object[]          values;
+    /** capacity - 1 **/
+    private int               mask;
+    /** count of entries in arrays **/
+    private int               assigned;
+    /** size to resize, 3/4 of capacity **/
+    private int               resizeAt;
+
+    private boolean           hasZeroKey;
+    private V                 zeroValue;
+
+    /**
+     * expected size is {@link #DEFAULT_EXPECTED_SIZE}
+     */
+    public LongObjectMap(){
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize count of entries can be put without resize
+     */
+    public LongObjectMap(int expectedSize){
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("The expectedSize can not be less than 0.");
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * get value of key
+     * 
+     * @param key
+     * @return null if not exist
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == EMPTY_KEY) {
+            return zeroValue;
+        }
+
+        int mask = this.mask;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return (V)values[i];
+            } else if (k == EMPTY_KEY) {
+                return null;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return key == EMPTY_KEY ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * put value of key
+     * 
+     * @param key
+     * @param value
+     * @return previous value of key, null if not exist
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (key == EMPTY_KEY) {
+            V previous = zeroValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+
+        int mask = this.mask;
+        int i = hash(key) & mask;
+        for (long k; (k = keys[i]) != EMPTY_KEY; i = (i + 1) & mask) {
+            if (k == key) {
+                V previous = (V)values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++assigned >= resizeAt) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * remove key
+     * 
+     * @param key
+     * @return value of key removed, null if not exist
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == EMPTY_KEY) {
+            V previous = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            return previous;
+        }
+
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = (V)values[index];
+        shiftConflictingKeys(index);
+        assigned--;
+        return previous;
+    }
+
+    public int size() {
+        return assigned + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = EMPTY_KEY;
+            values[i] = null;
+        }
+        assigned = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    /**
+     * get all keys, in no particular order
+     * 
+     * @return new array
+     */
+    public long[] keys() {
+        long[] result = new long[size()];
+        int count = 0;
+        if (hasZeroKey) {
+            result[count++] = EMPTY_KEY;
+        }
+        for (long k : keys) {
+            if (k != EMPTY_KEY) {
+                result[count++] = k;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * visit all entries, in no particular order
+     * 
+     * @param visitor
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryVisitor<V> visitor) {
+        if (hasZeroKey && !visitor.visit(EMPTY_KEY, zeroValue)) {
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY && !visitor.visit(keys[i], (V)values[i])) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param key not {@link #EMPTY_KEY}
+     * @return index in arrays, -1 if not exist
+     */
+    private int indexOf(long key) {
+        int mask = this.mask;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return i;
+            } else if (k == EMPTY_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * remove entry at index, and shift keys after it in the same probe sequence back, so no tombstone is needed
+     * 
+     * @param gapIndex
+     */
+    private void shiftConflictingKeys(int gapIndex) {
+        int mask = this.mask;
+        int distance = 0;
+        while (true) {
+            int index = (gapIndex + (++distance)) & mask;
+            long k = keys[index];
+            if (k == EMPTY_KEY) {
+                break;
+            }
+            // distance from its ideal slot is not less than distance from gap, so it can be moved to gap
+            int idealIndex = hash(k) & mask;
+            if (((index - idealIndex) & mask) >= distance) {
+                keys[gapIndex] = k;
+                values[gapIndex] = values[index];
+                gapIndex = index;
+                distance = 0;
+            }
+        }
+        keys[gapIndex] = EMPTY_KEY;
+        values[gapIndex] = null;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        int mask = this.mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != EMPTY_KEY) {
+                int i = hash(k) & mask;
+                while (keys[i] != EMPTY_KEY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Map is too large.");
+        }
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity == MAX_CAPACITY ? capacity - 1 : capacity - (capacity >> 2);
+    }
+
+    /**
+     * power of two capacity that can hold expected size under load factor 0.75
+     */
+    static int capacityFor(int expectedSize) {
+        long minCapacity = (long)Math.ceil(expectedSize / 0.75) + 1;
+        int capacity = 4;
+        while (capacity < minCapacity && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * spread bits of key, so keys in sequence are not in adjacent slots
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * visitor of entries
+     */
+    public interface EntryVisitor<V> {
+
+        /**
+         * @param key
+         * @param value
+         * @return whether to continue visiting
+         */
+        public boolean visit(long key, V value);
+    }
+}
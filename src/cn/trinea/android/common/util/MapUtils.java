@@ -1,7 +1,6 @@
 package cn.trinea.android.common.util;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -260,27 +259,19 @@ public class MapUtils {
     }
 
     /**
-     * join map
+     * join map to json object, key and value are escaped as json string
      * 
      * @param map
-     * @return
+     * @return <ul>
+     * <li>if map is null or empty, return null</li>
+     * <li>return {@link JSONWriter#toJson(Object)}</li>
+     * </ul>
      */
     public static String toJson(Map<String, String> map) {
         if (map == null || map.size() == 0) {
             return null;
         }
 
-        StringBuilder paras = new StringBuilder();
-        paras.append("{");
-        Iterator<Map.Entry<String, String>> ite = map.entrySet().iterator();
-        while (ite.hasNext()) {
-            Map.Entry<String, String> entry = (Map.Entry<String, String>)ite.next();
-            paras.append("\"").append(entry.getKey()).append("\":").append(entry.getValue());
-            if (ite.hasNext()) {
-                paras.append(",");
-            }
-        }
-        paras.append("}");
-        return paras.toString();
+        return JSONWriter.toJson(map);
     }
 }
@@ -1,24 +1,39 @@
 package cn.trinea.android.common.util;
 
+import java.lang.reflect.Method;
+
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
 /**
  * SqliteUtils
+ * <ul>
+ * <li>Write-ahead logging is enabled when system version is 3.0 or later, readers can run concurrently with the writer
+ * </li>
+ * <li>Write a lot of rows in bounded transactions, use {@link #WRITE_BATCH_SIZE} and
+ * {@link #commitAndBeginTransaction(SQLiteDatabase)}</li>
+ * </ul>
  * 
  * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-10-21
  */
 public class SqliteUtils {
 
+    /** max count of rows written in one transaction **/
+    public static final int             WRITE_BATCH_SIZE = 256;
+
     private static volatile SqliteUtils instance;
 
     private DbHelper                    dbHelper;
     private SQLiteDatabase              wDb;
     private SQLiteDatabase              rDb;
+    private boolean                     isWriteAheadLoggingEnabled;
 
     private SqliteUtils(Context context){
         dbHelper = new DbHelper(context);
         wDb = dbHelper.getWritableDatabase();
+        isWriteAheadLoggingEnabled = enableWriteAheadLogging(wDb);
         rDb = dbHelper.getReadableDatabase();
     }
 
@@ -40,4 +55,59 @@ public class SqliteUtils {
     public SQLiteDatabase getRDb() {
         return rDb;
     }
+
+    /**
+     * whether write-ahead logging is enabled, if true, queries of {@link #getRDb()} will not be blocked by writing
+     * 
+     * @return
+     */
+    public boolean isWriteAheadLoggingEnabled() {
+        return isWriteAheadLoggingEnabled;
+    }
+
+    /**
+     * commit current transaction and begin a new one, used to split a lot of writes into bounded transactions, so
+     * readers and other writers can get the lock between them
+     * 
+     * @param db
+     */
+    public void commitAndBeginTransaction(SQLiteDatabase db) {
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        db.beginTransaction();
+    }
+
+    /**
+     * close statement quietly
+     * 
+     * @param statement
+     */
+    public static void closeStatement(SQLiteStatement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * enable write-ahead logging, SQLiteDatabase#enableWriteAheadLogging is added in api 11, so call it by reflection
+     * 
+     * @param db
+     * @return whether enabled
+     */
+    private static boolean enableWriteAheadLogging(SQLiteDatabase db) {
+        if (db == null || Build.VERSION.SDK_INT < 11) {
+            return false;
+        }
+
+        try {
+            Method method = SQLiteDatabase.class.getMethod("enableWriteAheadLogging");
+            return Boolean.TRUE.equals(method.invoke(db));
+        } catch (Exception e) {
+            return false;
+        }
+    }
 }
@@ -2,36 +2,81 @@ package cn.trinea.android.common.util;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * TimeUtils
+ * <ul>
+ * <strong>Format time</strong>
+ * <li>{@link #getTime(long)}</li>
+ * <li>{@link #getTime(long, String)} format by pattern, formatter is cached per thread</li>
+ * <li>{@link #getTime(long, SimpleDateFormat)}</li>
+ * </ul>
+ * <ul>
+ * <strong>Http date</strong>
+ * <li>{@link #parseHttpDate(String)} parse RFC 1123, RFC 850 and asctime date</li>
+ * <li>{@link #formatHttpDate(long)} format to RFC 1123 date</li>
+ * </ul>
+ * <ul>
+ * <strong>Attentions:</strong>
+ * <li>{@link SimpleDateFormat} is not thread-safe, so {@link #DEFAULT_DATE_FORMAT} and {@link #DATE_FORMAT_DATE}
+ * should only be used by {@link #getTime(long, SimpleDateFormat)}, which locks the format</li>
+ * <li>Http date is parsed and formatted by hand without {@link SimpleDateFormat}, it's thread-safe and allocates
+ * nothing when parse</li>
+ * </ul>
  * 
  * @author <a href="http://www.trinea.cn" target="_blank">Trinea</a> 2013-8-24
  */
 public class TimeUtils {
 
-    public static final SimpleDateFormat DEFAULT_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    public static final SimpleDateFormat DATE_FORMAT_DATE    = new SimpleDateFormat("yyyy-MM-dd");
+    public static final String           DEFAULT_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    public static final String           DATE_PATTERN_DATE    = "yyyy-MM-dd";
+
+    public static final SimpleDateFormat DEFAULT_DATE_FORMAT  = new SimpleDateFormat(DEFAULT_DATE_PATTERN);
+    public static final SimpleDateFormat DATE_FORMAT_DATE     = new SimpleDateFormat(DATE_PATTERN_DATE);
+
+    /** formatters of each thread **/
+    private static final DateFormatCache DATE_FORMAT_CACHE    = new DateFormatCache();
+
+    private static final String[]        DAY_NAMES            = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+    private static final String[]        MONTH_NAMES          = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul",
+            "Aug", "Sep", "Oct", "Nov", "Dec" };
+    private static final long            MILLIS_PER_DAY       = 24 * 60 * 60 * 1000L;
 
     /**
      * long time to string
      * 
      * @param timeInMillis
-     * @param dateFormat
+     * @param dateFormat locked when format, because SimpleDateFormat is not thread-safe
      * @return
      */
     public static String getTime(long timeInMillis, SimpleDateFormat dateFormat) {
-        return dateFormat.format(new Date(timeInMillis));
+        synchronized (dateFormat) {
+            return dateFormat.format(new Date(timeInMillis));
+        }
+    }
+
+    /**
+     * long time to string, formatter of the pattern is cached per thread
+     * 
+     * @param timeInMillis
+     * @param pattern
+     * @return
+     * @see SimpleDateFormat
+     */
+    public static String getTime(long timeInMillis, String pattern) {
+        return getDateFormat(pattern).format(new Date(timeInMillis));
     }
 
     /**
-     * long time to string, format is {@link #DEFAULT_DATE_FORMAT}
+     * long time to string, format is {@link #DEFAULT_DATE_PATTERN}
      * 
      * @param timeInMillis
      * @return
      */
     public static String getTime(long timeInMillis) {
-        return getTime(timeInMillis, DEFAULT_DATE_FORMAT);
+        return getTime(timeInMillis, DEFAULT_DATE_PATTERN);
     }
 
     /**
@@ -44,7 +89,7 @@ public class TimeUtils {
     }
 
     /**
-     * get current time in milliseconds, format is {@link #DEFAULT_DATE_FORMAT}
+     * get current time in milliseconds, format is {@link #DEFAULT_DATE_PATTERN}
      * 
      * @return
      */
@@ -60,4 +105,307 @@ public class TimeUtils {
     public static String getCurrentTimeInString(SimpleDateFormat dateFormat) {
         return getTime(getCurrentTimeInLong(), dateFormat);
     }
+
+    /**
+     * get formatter of the pattern, cached per thread so it can be used without lock
+     * 
+     * @param pattern
+     * @return
+     */
+    public static SimpleDateFormat getDateFormat(String pattern) {
+        Map<String, SimpleDateFormat> formatMap = DATE_FORMAT_CACHE.get();
+        SimpleDateFormat dateFormat = formatMap.get(pattern);
+        if (dateFormat == null) {
+            dateFormat = new SimpleDateFormat(pattern);
+            formatMap.put(pattern, dateFormat);
+        }
+        return dateFormat;
+    }
+
+    /**
+     * parse http date, thread-safe
+     * <ul>
+     * <li>RFC 1123, likes Sun, 06 Nov 1994 08:49:37 GMT</li>
+     * <li>RFC 850, likes Sunday, 06-Nov-94 08:49:37 GMT</li>
+     * <li>asctime, likes Sun Nov  6 08:49:37 1994</li>
+     * <li>Day of week is not checked, time zone can be GMT, UTC, UT, Z or offset likes +0800, default is GMT</li>
+     * </ul>
+     * 
+     * @param httpDate
+     * @return -1 if invalid, otherwise time in milliseconds
+     */
+    public static long parseHttpDate(String httpDate) {
+        if (httpDate == null) {
+            return -1;
+        }
+
+        int length = httpDate.length(), i = skipSpace(httpDate, 0);
+        int day, month, year, time;
+        int comma = httpDate.indexOf(',', i);
+        if (comma >= 0) {
+            // RFC 1123 or RFC 850, day month year time zone
+            i = skipSpace(httpDate, comma + 1);
+            int dayEnd = skipDigit(httpDate, i);
+            if ((day = parseInt(httpDate, i, dayEnd)) < 0 || dayEnd >= length) {
+                return -1;
+            }
+            if (httpDate.charAt(dayEnd) != ' ' && httpDate.charAt(dayEnd) != '-') {
+                return -1;
+            }
+            i = dayEnd + 1;
+            if ((month = parseMonth(httpDate, i)) < 0) {
+                return -1;
+            }
+            i += 3;
+            if (i >= length || (httpDate.charAt(i) != ' ' && httpDate.charAt(i) != '-')) {
+                return -1;
+            }
+            int yearEnd = skipDigit(httpDate, ++i);
+            if ((year = parseInt(httpDate, i, yearEnd)) < 0) {
+                return -1;
+            }
+            if (yearEnd - i == 2) {
+                // two digit year of RFC 850
+                year += (year < 70 ? 2000 : 1900);
+            }
+            i = skipSpace(httpDate, yearEnd);
+            if ((time = parseTime(httpDate, i)) < 0) {
+                return -1;
+            }
+            i = skipSpace(httpDate, i + 8);
+            int offset = parseZone(httpDate, i);
+            if (offset == Integer.MIN_VALUE) {
+                return -1;
+            }
+            time -= offset;
+        } else {
+            // asctime, day-of-week month day time year
+            i = skipSpace(httpDate, i + 3);
+            if ((month = parseMonth(httpDate, i)) < 0) {
+                return -1;
+            }
+            i = skipSpace(httpDate, i + 3);
+            int dayEnd = skipDigit(httpDate, i);
+            if ((day = parseInt(httpDate, i, dayEnd)) < 0) {
+                return -1;
+            }
+            i = skipSpace(httpDate, dayEnd);
+            if ((time = parseTime(httpDate, i)) < 0) {
+                return -1;
+            }
+            i = skipSpace(httpDate, i + 8);
+            int yearEnd = skipDigit(httpDate, i);
+            if (yearEnd - i != 4 || (year = parseInt(httpDate, i, yearEnd)) < 0
+                || skipSpace(httpDate, yearEnd) != length) {
+                return -1;
+            }
+        }
+
+        if (day < 1 || day > 31) {
+            return -1;
+        }
+        return getDaysFromEpoch(year, month, day) * MILLIS_PER_DAY + time * 1000L;
+    }
+
+    /**
+     * format time to http date of RFC 1123, likes Sun, 06 Nov 1994 08:49:37 GMT, thread-safe
+     * 
+     * @param timeInMillis
+     * @return
+     */
+    public static String formatHttpDate(long timeInMillis) {
+        long days = timeInMillis / MILLIS_PER_DAY;
+        long millisOfDay = timeInMillis % MILLIS_PER_DAY;
+        if (millisOfDay < 0) {
+            days--;
+            millisOfDay += MILLIS_PER_DAY;
+        }
+        int secondOfDay = (int)(millisOfDay / 1000);
+
+        // civil date from days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int)(z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        // 1970-01-01 is Thursday
+        int dayOfWeek = (int)(((days + 4) % 7 + 7) % 7);
+
+        StringBuilder sb = new StringBuilder(29);
+        sb.append(DAY_NAMES[dayOfWeek]).append(", ");
+        appendTwoDigits(sb, day).append(' ').append(MONTH_NAMES[month - 1]).append(' ').append(year).append(' ');
+        appendTwoDigits(sb, secondOfDay / 3600).append(':');
+        appendTwoDigits(sb, secondOfDay / 60 % 60).append(':');
+        appendTwoDigits(sb, secondOfDay % 60).append(" GMT");
+        return sb.toString();
+    }
+
+    /**
+     * days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+     * 
+     * @param year
+     * @param month 1 to 12
+     * @param day
+     * @return
+     */
+    private static long getDaysFromEpoch(int year, int month, int day) {
+        int y = (month <= 2 ? year - 1 : year);
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * parse HH:mm:ss from index
+     * 
+     * @param s
+     * @param index
+     * @return seconds of day, -1 if invalid
+     */
+    private static int parseTime(String s, int index) {
+        if (index + 8 > s.length() || s.charAt(index + 2) != ':' || s.charAt(index + 5) != ':') {
+            return -1;
+        }
+        int hour = parseInt(s, index, index + 2);
+        int minute = parseInt(s, index + 3, index + 5);
+        int second = parseInt(s, index + 6, index + 8);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return -1;
+        }
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * parse time zone from index
+     * 
+     * @param s
+     * @param index
+     * @return offset in seconds, {@link Integer#MIN_VALUE} if invalid
+     */
+    private static int parseZone(String s, int index) {
+        int end = s.length();
+        while (end > index && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (index == end || isWord(s, index, end, "GMT") || isWord(s, index, end, "UTC")
+            || isWord(s, index, end, "UT") || isWord(s, index, end, "Z")) {
+            return 0;
+        }
+
+        // GMT+08:00 or +0800
+        if (end - index > 3 && s.regionMatches(true, index, "GMT", 0, 3)) {
+            index += 3;
+        }
+        char sign = s.charAt(index);
+        if (sign != '+' && sign != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int hour, minute;
+        if (end - index == 5) {
+            hour = parseInt(s, index + 1, index + 3);
+            minute = parseInt(s, index + 3, index + 5);
+        } else if (end - index == 6 && s.charAt(index + 3) == ':') {
+            hour = parseInt(s, index + 1, index + 3);
+            minute = parseInt(s, index + 4, index + 6);
+        } else {
+            return Integer.MIN_VALUE;
+        }
+        if (hour < 0 || minute < 0 || minute > 59) {
+            return Integer.MIN_VALUE;
+        }
+        int offset = hour * 3600 + minute * 60;
+        return sign == '+' ? offset : -offset;
+    }
+
+    /**
+     * parse three letters month name from index, ignore case
+     * 
+     * @param s
+     * @param index
+     * @return 1 to 12, -1 if invalid
+     */
+    private static int parseMonth(String s, int index) {
+        if (index + 3 > s.length()) {
+            return -1;
+        }
+        for (int i = 0; i < MONTH_NAMES.length; i++) {
+            if (s.regionMatches(true, index, MONTH_NAMES[i], 0, 3)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * parse digits between start and end
+     * 
+     * @param s
+     * @param start
+     * @param end
+     * @return -1 if empty, too long or not digit
+     */
+    private static int parseInt(String s, int start, int end) {
+        if (start >= end || end - start > 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * whether chars between start and end are the word, ignore case
+     * 
+     * @param s
+     * @param start
+     * @param end
+     * @param word
+     * @return
+     */
+    private static boolean isWord(String s, int start, int end, String word) {
+        return end - start == word.length() && s.regionMatches(true, start, word, 0, word.length());
+    }
+
+    private static int skipDigit(String s, int index) {
+        int length = s.length();
+        while (index < length && s.charAt(index) >= '0' && s.charAt(index) <= '9') {
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipSpace(String s, int index) {
+        int length = s.length();
+        while (index < length && s.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char)('0' + value / 10)).append((char)('0' + value % 10));
+    }
+
+    /**
+     * formatters of each thread, key is pattern
+     */
+    private static class DateFormatCache extends ThreadLocal<Map<String, SimpleDateFormat>> {
+
+        @Override
+        protected Map<String, SimpleDateFormat> initialValue() {
+            return new HashMap<String, SimpleDateFormat>();
+        }
+    }
 }